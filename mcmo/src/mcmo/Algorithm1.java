@@ -1,9 +1,7 @@
 package mcmo;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.PriorityQueue;
 
 public class Algorithm1 {
 
@@ -59,82 +57,6 @@ public class Algorithm1 {
 	//	}
 
 
-	//This method implement Dijkstra shortest path algorithm, i.e. min-priority queue and returns a path from source to target
-	//Reference: http://en.wikipedia.org/wiki/Dijkstra%27s_algorithm (SAME alphabets)
-	//http://en.literateprograms.org/index.php?title=Special:DownloadCode/Dijkstra%27s_algorithm_%28Java%29&oldid=15444
-	//https://www.youtube.com/watch?v=gdmfOwyQlcI
-
-	public static <V> ArrayList<V> dijkstraShortestPath (Graph<V> graph,V source, V target) {
-		System.out.println("Shortest Path:"+source+"->"+target);
-		ArrayList <V> shortest_path= new ArrayList <V> ();
-
-		//Special case: source == target
-		if(source.equals(target)) {
-			shortest_path.add(0, target);
-			shortest_path.add(0, source);
-			return shortest_path;				
-		}
-
-
-		//HashMap<V, Double> dist = new HashMap<V, Double>(); //distance to all vertices
-		HashMap<V, V> prev = new HashMap<V, V>(); //predecessor list
-
-		PriorityQueue<Vertex<V>> Q = new PriorityQueue<>();
-
-
-		graph.getVertexList().get(source).min_dist=0;		
-		graph.getVertexList().get(source).pre_node=null;
-		prev.put(source, null);
-
-		//Initialization
-		for (V v: graph.getVertexList().keySet()){
-			if (!v.equals(source)) {
-				//dist.put(v, Double.POSITIVE_INFINITY);
-				graph.getVertexList().get(v).min_dist=Double.POSITIVE_INFINITY;
-
-				//prev.put(v, null);
-				graph.getVertexList().get(v).pre_node=null;
-				prev.put(v, null);
-
-			}
-			Q.offer(graph.getVertexList().get(v));			
-		}	
-
-		//Main Procedure
-		while (!Q.isEmpty()){
-			Vertex u=Q.poll();
-
-			//Terminate if currently-considered vertex is the target
-			if(u.getID().equals(target)) break;
-
-
-			for (V v : graph.getAdjacentVertices((V) u.getID())){
-				//double alt = dist.get(u) + graph.getDistanceBetween(u, v);
-				double alt = u.min_dist + graph.getDistanceBetween((V) u.getID(), v);
-				if (alt<graph.getVertexList().get(v).min_dist){
-					Q.remove(graph.getVertexList().get(v));					
-					graph.getVertexList().get(v).min_dist=alt;					
-					graph.getVertexList().get(v).pre_node=u.getID();
-					prev.put(v, (V) u.getID());
-
-					Q.add(graph.getVertexList().get(v));					
-				}				
-			}
-		}
-
-		//RETRIVE path
-		V u=target;
-		shortest_path.add(0, u);
-
-		while(graph.getVertexList().get(u).pre_node!=null){
-			shortest_path.add(0, (V) graph.getVertexList().get(u).pre_node); //Add to the head of the list
-			u=(V) graph.getVertexList().get(u).pre_node;			
-		}	
-
-		return shortest_path;
-	}
-
-
 	public static <V> ArrayList <V> recusiveGreedy(Graph<V> road_network, InfluenceModel<V> social_network, V start, V target, int budget, HashSet iniActiveNodes, int max_iter) throws Exception {
 		System.out.println(">>>ENTER RG:"+start+","+target+","+budget+","+max_iter);
 
@@ -1,65 +1,9 @@
 package mcmo;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.PriorityQueue;
 
 public class Algorithm2 {
-	//Use single source Dijkstra algorithm, which computes shortest path to every other node
-	public static <V> WrappedObject <V> dijkstraShortestPath (Graph<V> graph,V source) {
-		System.out.println("Shortest Path:"+source+"->ALL");
-
-		HashMap<V, Double> dist = new HashMap<V, Double>(); //distance to all vertices
-		HashMap<V, V> prev = new HashMap<V, V>(); //predecessor list
-
-		PriorityQueue<Vertex<V>> Q = new PriorityQueue<>();
-
-
-		graph.getVertexList().get(source).min_dist=0;
-		dist.put(source, 0.0);
-
-		graph.getVertexList().get(source).pre_node=null;
-		prev.put(source, null);
-
-		//Initialization
-		for (V v: graph.getVertexList().keySet()){
-			if (!v.equals(source)) {
-				graph.getVertexList().get(v).min_dist=Double.POSITIVE_INFINITY;
-				dist.put(v, Double.POSITIVE_INFINITY);				
-
-				//prev.put(v, null);
-				graph.getVertexList().get(v).pre_node=null;
-				prev.put(v, null);
-
-			}
-			Q.offer(graph.getVertexList().get(v));			
-		}	
-
-		//Main Procedure
-		while (!Q.isEmpty()){
-			Vertex u=Q.poll();
-
-			for (V v : graph.getAdjacentVertices((V) u.getID())){
-				//double alt = dist.get(u) + graph.getDistanceBetween(u, v);
-				double alt = u.min_dist + graph.getDistanceBetween((V) u.getID(), v);
-				if (alt<graph.getVertexList().get(v).min_dist){
-					Q.remove(graph.getVertexList().get(v));	
-
-					graph.getVertexList().get(v).min_dist=alt;
-					dist.put(v, alt);											
-
-					graph.getVertexList().get(v).pre_node=u.getID();
-					prev.put(v, (V) u.getID());
-
-					Q.add(graph.getVertexList().get(v));					
-				}				
-			}
-		}
-
-		System.out.println("Dist:"+dist);
-		return new WrappedObject(dist, prev);
-	}
 
 	public static <V> ArrayList <V> recusiveGreedy(Graph<V> road_network, InfluenceModel<V> social_network, V start, V target, double budget, HashSet iniActiveNodes, int max_iter) throws Exception {
 		System.out.println(">>>ENTER RG:"+start+","+target+","+budget+","+max_iter);
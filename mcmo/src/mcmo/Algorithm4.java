@@ -1,9 +1,9 @@
 package mcmo;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.PriorityQueue;
+
+import static mcmo.GreedyWalks.*;
 
 /**
  * This class implements the generalized cost-benefit greedy algorithm (Zhang 2016)
@@ -12,71 +12,13 @@ import java.util.PriorityQueue;
  *
  */
 public class Algorithm4<V> {
-	private static final boolean USE_CHRISTOFIDES=true;
+	private static final boolean USE_CHRISTOFIDES=GreedyWalks.USE_CHRISTOFIDES;
+	private static final boolean PARALLEL=Boolean.getBoolean("mcmo.parallel"); //score candidates concurrently: [-Dmcmo.parallel=true]
 	
 	public Algorithm4() {
 		// TODO Auto-generated constructor stub
 	}
 
-	/**
-	 * Single source Dijkstra algorithm
-	 * @param graph graph
-	 * @param source source vertex
-	 * @return a list of distance from source and preceding vertex for each vertex
-	 */
-	public static <V> WrappedObject <V> dijkstraShortestPath (Graph<V> graph,V source) {
-		/*System.out.println("Shortest Path:"+source+"->ALL");*/
-
-		HashMap<V, Double> dist = new HashMap<V, Double>(); //distance to all vertices
-		HashMap<V, V> prev = new HashMap<V, V>(); //predecessor list
-
-		PriorityQueue<Vertex<V>> Q = new PriorityQueue<>();
-
-
-		graph.getVertexList().get(source).min_dist=0;
-		dist.put(source, 0.0);
-
-		graph.getVertexList().get(source).pre_node=null;
-		prev.put(source, null);
-
-		//Initialization
-		for (V v: graph.getVertexList().keySet()){
-			if (!v.equals(source)) {
-				graph.getVertexList().get(v).min_dist=Double.POSITIVE_INFINITY;
-				dist.put(v, Double.POSITIVE_INFINITY);				
-
-				//prev.put(v, null);
-				graph.getVertexList().get(v).pre_node=null;
-				prev.put(v, null);
-
-			}
-			Q.offer(graph.getVertexList().get(v));			
-		}	
-
-		//Main Procedure
-		while (!Q.isEmpty()){
-			Vertex u=Q.poll();
-
-			for (V v : graph.getAdjacentVertices((V) u.getID())){
-				//double alt = dist.get(u) + graph.getDistanceBetween(u, v);
-				double alt = u.min_dist + graph.getDistanceBetween((V) u.getID(), v);
-				if (alt<graph.getVertexList().get(v).min_dist){
-					Q.remove(graph.getVertexList().get(v));	
-
-					graph.getVertexList().get(v).min_dist=alt;
-					dist.put(v, alt);											
-
-					graph.getVertexList().get(v).pre_node=u.getID();
-					prev.put(v, (V) u.getID());
-
-					Q.add(graph.getVertexList().get(v));					
-				}				
-			}
-		}
-
-		/*System.out.println("Dist:"+dist);*/
-		return new WrappedObject(dist, prev);
-	}
 	/**
 	 * Compute optimal walk using cost-benefit heuristic
 	 * @param road_network routing network incorporating houses and way points 
@@ -90,6 +32,18 @@ public class Algorithm4<V> {
 	 */
 	public static <V> ArrayList <V> greedyWalk(int mode, Graph<V> road_network, InfluenceModel<V> social_network, 
 			V start, V target, double budget, HashSet <V> iniActiveNodes) throws Exception {
+		return greedyWalk(mode, road_network, social_network, start, target, budget, iniActiveNodes, true);
+	}
+
+	/**
+	 * Compute optimal walk using cost-benefit heuristic, tracking its visited set and budget usage
+	 * @param score whether to also track the influence of the walk; a caller estimating it itself may skip it
+	 * @see #greedyWalk(int, Graph, InfluenceModel, Object, Object, double, HashSet)
+	 */
+	public static <V> ArrayList <V> greedyWalk(int mode, Graph<V> road_network, InfluenceModel<V> social_network, 
+			V start, V target, double budget, HashSet <V> iniActiveNodes, boolean score) throws Exception {
+		requireActivationCounts(social_network);
+
 		//DEFINED two lists: one for visited set, one for unvisited set
 		HashSet<V> visited_set=new HashSet<V>();
 		HashSet<V> unvisited_set=new HashSet<V>();
@@ -99,6 +53,7 @@ public class Algorithm4<V> {
 			if(iniActiveNodes.contains(v)) visited_set.add(v);
 			else unvisited_set.add(v);
 		}
+		keepRanked(social_network, unvisited_set);
 
 		//BEST walk tracked so far
 		ArrayList <V> walk_best = new ArrayList <V>();
@@ -116,97 +71,95 @@ public class Algorithm4<V> {
 
 			//double infl_cur=social_network.getExpectedInfluence(visited_set); //influence before choosing a new vertex			
 						
-			double cost_cur=0;
-			//System.out.println(USE_CHRISTOFIDES);
-			if(USE_CHRISTOFIDES) 
-				cost_cur=Graph.shortestCoverCostChristofides(start,road_network,exclude(visited_set, iniActiveNodes)).length;//[aij]
-			else 
-				cost_cur=Graph.shortestCoverCostGreedy(start,road_network,exclude(visited_set, iniActiveNodes)).length;//[aaai16]
+			double cost_cur=coverWalk(mode, start, road_network, visited_set, iniActiveNodes).length;//cost before choosing a new vertex, i.e., approximate shortest walk covering all nodes
 			
 			//ArrayList <V> walk_cur=Graph.shortestCoverCostChristofides(start,road_network,exclude(visited_set, iniActiveNodes)).walk;
 
 			//System.out.println("visited_set:"+visited_set);
 			//System.out.println("walk_cur:"+walk_cur);		
 
-
-			if(mode==1) cost_cur+=ChannelDoorToDoor.visit_cost*exclude(visited_set, iniActiveNodes).size();//cost before choosing a new vertex, i.e., approximate shortest walk covering all nodes
-			else if(mode==2) cost_cur+=Driver_rg.visit_cost*exclude(visited_set, iniActiveNodes).size();
-
-			for(V v:unvisited_set){	
-				//System.out.println("Adding:"+v);
-				HashSet <V> u=union(v, visited_set); //Union with visited set
-
-				//Walk and cost
-				WrapWalkWithLength walk_new;
-				
-				if(USE_CHRISTOFIDES)
-					walk_new=Graph.shortestCoverCostChristofides(start,road_network,exclude(u,iniActiveNodes)); //[aij]
-				else
-					walk_new=Graph.shortestCoverCostGreedy(start,road_network,exclude(u,iniActiveNodes));//[aaai16]
-				//System.out.println("walk_new:"+walk_new.walk);
-
-				double cost_new=walk_new.length;
-				if (mode==1) cost_new+=ChannelDoorToDoor.visit_cost*exclude(u,iniActiveNodes).size(); //cost of adding the new vertex, i.e., approximate shortest walk covering all nodes
-				else if(mode==2) cost_new+=Driver_rg.visit_cost*exclude(u,iniActiveNodes).size(); 
-
-				//System.out.println("cost_new:"+cost_new);								
-
-				//OPTIMIZE PERFORMANCE: method 1
-				//SKIP infeasible nodes to boost speed
-				//Twice fast
-				if(ChannelDoorToDoor.prune_mode||Driver_rg.prune_mode){
-					if(cost_new>budget) {
-						//System.out.println("Infeasible!");
-						continue;						
+			if(PARALLEL){
+				//SCORE all candidates concurrently, then reduce them in the order of the loop below
+				for(Candidate<V> c:evaluateCandidates(mode, road_network, social_network, start, budget, iniActiveNodes, visited_set, unvisited_set)){
+					if(Double.isNaN(c.influence)) continue; //infeasible
+					double fc=(c.influence-infl_cur)/(c.cost-cost_cur);//gradient
+					if (fc>=fc_max_iter){
+						infl_cur=c.influence;//jair
+						node_best_iter=c.node;
+						fc_max_iter=fc;
+						walk_best_iter=c.walk;
+						cost_best_iter=c.cost;
 					}
-				}				
-
-				double delta_cost=cost_new-cost_cur; //cost changes
-				//System.out.println("delta_c="+delta_cost);
-
-				//Influence								
-				double infl_new=social_network.getExpectedInfluence(u); //influence when adding the new vertex
-				double delta_f=infl_new-infl_cur; //influence changes
-
-				//System.out.println("delta_f="+delta_f);
-
-				double fc=delta_f/delta_cost;//gradient
-
-				//Special case: adding one extra node won't change the cover cost, i.e., visit cost=0. 
-				//				if(delta_cost==0&&delta_f>0){
-				//					System.out.println("Free addition!");
-				//					System.out.println("visited_set:"+visited_set);
-				//					System.out.println("walk_cur:"+walk_cur);
-				//					System.out.println("v|u:"+v+"|"+u);
-				//					System.out.println("walk_new:"+walk_new.walk);
-				//					System.out.println("delta_c="+delta_cost);
-				//					Graph.shortestCoverCostChristofides(start,road_network,exclude(u,iniActiveNodes));
-				//					node_best_iter=v;
-				//					walk_best_iter=walk_new.walk;
-				//					cost_best_iter=cost_new;
-				//					break;//stop checking all others candidates					
-				//				}
-
-				if (fc>=fc_max_iter){
+				}
+			}else{
+				for(V v:unvisited_set){	
+					//System.out.println("Adding:"+v);
+					//Walk and cost
+					WrapWalkWithLength<V> walk_new=coverWalk(mode, start, road_network, union(v, visited_set), iniActiveNodes);
+					//System.out.println("walk_new:"+walk_new.walk);
+
+					double cost_new=walk_new.length; //cost of adding the new vertex, i.e., approximate shortest walk covering all nodes
+
+					//System.out.println("cost_new:"+cost_new);								
+
+					//OPTIMIZE PERFORMANCE: method 1
+					//SKIP infeasible nodes to boost speed
+					//Twice fast
+					if(ChannelDoorToDoor.prune_mode||Driver_rg.prune_mode){
+						if(cost_new>budget) {
+							//System.out.println("Infeasible!");
+							continue;						
+						}
+					}				
+
+					double delta_cost=cost_new-cost_cur; //cost changes
+					//System.out.println("delta_c="+delta_cost);
+
+					//Influence								
+					double infl_bar=(delta_cost>0)?infl_cur+fc_max_iter*delta_cost:Double.NEGATIVE_INFINITY; //influence to beat the best so far
+					double infl_new=social_network.getExpectedInfluence(visited_set, v, infl_bar); //influence when adding the new vertex
+					double delta_f=infl_new-infl_cur; //influence changes
+
+					//System.out.println("delta_f="+delta_f);
+
+					double fc=delta_f/delta_cost;//gradient
+
+					//Special case: adding one extra node won't change the cover cost, i.e., visit cost=0. 
+					//				if(delta_cost==0&&delta_f>0){
+					//					System.out.println("Free addition!");
 					//					System.out.println("visited_set:"+visited_set);
 					//					System.out.println("walk_cur:"+walk_cur);
-					//					System.out.println("Good Candy!");
 					//					System.out.println("v|u:"+v+"|"+u);
 					//					System.out.println("walk_new:"+walk_new.walk);
 					//					System.out.println("delta_c="+delta_cost);
-					//					System.out.println("delta_f="+delta_f);
-					//					System.out.println(v+":"+fc);
-
-					infl_cur=infl_new;//jair
-					node_best_iter=v;
-					fc_max_iter=fc;					
-					//delta_f_max=delta_f;					
-					walk_best_iter=walk_new.walk;
-					cost_best_iter=cost_new;									
-				}else{
-					//System.out.println("Feasible, but Bad Candy!");
-				}
-			}			
+					//					Graph.shortestCoverCostChristofides(start,road_network,exclude(u,iniActiveNodes));
+					//					node_best_iter=v;
+					//					walk_best_iter=walk_new.walk;
+					//					cost_best_iter=cost_new;
+					//					break;//stop checking all others candidates					
+					//				}
+
+					if (fc>=fc_max_iter){
+						//					System.out.println("visited_set:"+visited_set);
+						//					System.out.println("walk_cur:"+walk_cur);
+						//					System.out.println("Good Candy!");
+						//					System.out.println("v|u:"+v+"|"+u);
+						//					System.out.println("walk_new:"+walk_new.walk);
+						//					System.out.println("delta_c="+delta_cost);
+						//					System.out.println("delta_f="+delta_f);
+						//					System.out.println(v+":"+fc);
+
+						infl_cur=infl_new;//jair
+						node_best_iter=v;
+						fc_max_iter=fc;					
+						//delta_f_max=delta_f;					
+						walk_best_iter=walk_new.walk;
+						cost_best_iter=cost_new;									
+					}else{
+						//System.out.println("Feasible, but Bad Candy!");
+					}
+				}			
+			}
 
 			if(node_best_iter!=null&&cost_best_iter<=budget){ //method 0: 
 				//if (node_best_iter!=null){  //method 1 
@@ -214,15 +167,7 @@ public class Algorithm4<V> {
 				visited_set.add(node_best_iter); //ADD best node to visited set
 				unvisited_set.remove(node_best_iter); //REMOVE best node from unvisited set
 				//System.out.println("visited set:"+visited_set+";cost:"+cost_new_max+";walk:"+walk_new_max);
-				if(mode==1){
-					//Driver.max_influe+=delta_f_max; //Track influence changes
-					ChannelDoorToDoor.budget=cost_best_iter;//Track budget usage
-					ChannelDoorToDoor.visit_set=exclude(visited_set, iniActiveNodes);
-				}else if(mode==2){
-					//Driver_rg.max_influe+=delta_f_max; //Track influence changes
-					Driver_rg.budget=cost_best_iter;//Track budget usage
-					Driver_rg.visit_set=exclude(visited_set, iniActiveNodes);
-				}
+				trackVisit(mode, cost_best_iter, visited_set, iniActiveNodes);
 
 
 			}else {
@@ -233,46 +178,7 @@ public class Algorithm4<V> {
 		}
 
 
-		//Adjusted Influence[jair]
-		double influAdj=(visited_set.size()==iniActiveNodes.size())?0:
-			social_network.getExpectedInfluence(visited_set)-social_network.getExpectedInfluence(iniActiveNodes);
-		
-		//System.out.println();
-		//
-		if(influAdj<0){
-			//System.out.println(influAdj);
-			//System.out.println();			
-		}
-		
-		if(mode==1) ChannelDoorToDoor.max_influe=influAdj;
-		else if(mode==2){
-			Driver_rg.max_influe=influAdj;
-		}
-
+		if(score) trackInfluence(mode, social_network, visited_set, iniActiveNodes);
 		return walk_best;		
 	}
-
-
-	public static <V> HashSet union(V new_node, HashSet <V> active_nodes){
-		HashSet <V> union=new HashSet <V> (active_nodes);		
-		union.add(new_node);
-		return union;		
-	}
-
-	public static <V> HashSet union( HashSet <V> node_set_1, HashSet <V> node_set_2){
-		HashSet <V> union=new HashSet <V> (node_set_1);
-		//		for (V v: node_set_2){
-		//			union.add(v);		
-		//		}
-		union.addAll(node_set_2);
-		return union;			
-	}	
-
-	public static <V> HashSet<V> exclude( HashSet <V> node_set_1, HashSet <V> node_set_2){
-		HashSet <V> exclude=new HashSet <V> ();
-		for(V v: node_set_1){
-			if(!node_set_2.contains(v)) exclude.add(v);  
-		}		
-		return exclude;			
-	}
 }
@@ -1,10 +1,11 @@
 package mcmo;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.PriorityQueue;
 
+import static mcmo.GreedyWalks.*;
+
 /**
  * This class implements the simple greedy algorithm ignoring cost (Zhang 2016)
  * @author zhangh24
@@ -12,72 +13,14 @@ import java.util.PriorityQueue;
  */
 public class Algorithm5 {
 
-	private static final boolean USE_CHRISTOFIDES=true;
+	private static final boolean USE_CHRISTOFIDES=GreedyWalks.USE_CHRISTOFIDES;
+	private static final boolean LAZY=Boolean.getBoolean("mcmo.lazy"); //lazy greedy (CELF) walk: [-Dmcmo.lazy=true]; not in Algorithm4, whose stale gain per cost bounds nothing
+	private static final boolean PARALLEL=Boolean.getBoolean("mcmo.parallel"); //score candidates concurrently: [-Dmcmo.parallel=true]
 
 	public Algorithm5() {
 		// TODO Auto-generated constructor stub
 	}
 
-	/**
-	 * Single source Dijkstra algorithm
-	 * @param graph graph
-	 * @param source source vertex
-	 * @return list of shortest distance and previous node
-	 */
-	public static <V> WrappedObject <V> dijkstraShortestPath (Graph<V> graph,V source) {
-		/*System.out.println("Shortest Path:"+source+"->ALL");*/
-
-		HashMap<V, Double> dist = new HashMap<V, Double>(); //distance to all vertices
-		HashMap<V, V> prev = new HashMap<V, V>(); //predecessor list
-
-		PriorityQueue<Vertex<V>> Q = new PriorityQueue<>();
-
-
-		graph.getVertexList().get(source).min_dist=0;
-		dist.put(source, 0.0);
-
-		graph.getVertexList().get(source).pre_node=null;
-		prev.put(source, null);
-
-		//Initialization
-		for (V v: graph.getVertexList().keySet()){
-			if (!v.equals(source)) {
-				graph.getVertexList().get(v).min_dist=Double.POSITIVE_INFINITY;
-				dist.put(v, Double.POSITIVE_INFINITY);				
-
-				//prev.put(v, null);
-				graph.getVertexList().get(v).pre_node=null;
-				prev.put(v, null);
-
-			}
-			Q.offer(graph.getVertexList().get(v));			
-		}	
-
-		//Main Procedure
-		while (!Q.isEmpty()){
-			Vertex u=Q.poll();
-
-			for (V v : graph.getAdjacentVertices((V) u.getID())){
-				//double alt = dist.get(u) + graph.getDistanceBetween(u, v);
-				double alt = u.min_dist + graph.getDistanceBetween((V) u.getID(), v);
-				if (alt<graph.getVertexList().get(v).min_dist){
-					Q.remove(graph.getVertexList().get(v));	
-
-					graph.getVertexList().get(v).min_dist=alt;
-					dist.put(v, alt);											
-
-					graph.getVertexList().get(v).pre_node=u.getID();
-					prev.put(v, (V) u.getID());
-
-					Q.add(graph.getVertexList().get(v));					
-				}				
-			}
-		}
-
-		/*System.out.println("Dist:"+dist);*/
-		return new WrappedObject(dist, prev);
-	}
-
 	/**
 	 * Compute optimal walk using simple greedy
 	 * @param road_network routing network incorporating houses and way points 
@@ -91,6 +34,18 @@ public class Algorithm5 {
 	 */
 	public static <V> ArrayList <V> greedyWalk(int mode, Graph<V> road_network, InfluenceModel<V> social_network, 
 			V start, V target, double budget, HashSet <V> iniActiveNodes) throws Exception {
+		return greedyWalk(mode, road_network, social_network, start, target, budget, iniActiveNodes, true);
+	}
+
+	/**
+	 * Compute optimal walk using simple greedy, tracking its visited set and budget usage
+	 * @param score whether to also track the influence of the walk; a caller estimating it itself may skip it
+	 * @see #greedyWalk(int, Graph, InfluenceModel, Object, Object, double, HashSet)
+	 */
+	public static <V> ArrayList <V> greedyWalk(int mode, Graph<V> road_network, InfluenceModel<V> social_network, 
+			V start, V target, double budget, HashSet <V> iniActiveNodes, boolean score) throws Exception {
+		requireActivationCounts(social_network);
+
 		//DEFINED two lists: one for visited set, one for unvisited set
 		HashSet<V> visited_set=new HashSet<V>();
 		HashSet<V> unvisited_set=new HashSet<V>();
@@ -100,6 +55,9 @@ public class Algorithm5 {
 			if(iniActiveNodes.contains(v)) visited_set.add(v);
 			else unvisited_set.add(v);			
 		}
+		keepRanked(social_network, unvisited_set);
+
+		if(LAZY) return lazyGreedyWalk(mode, road_network, social_network, start, budget, iniActiveNodes, visited_set, unvisited_set, score);
 
 		//BEST walk tracked so far
 		ArrayList <V> walk_best = new ArrayList <V> ();
@@ -119,42 +77,46 @@ public class Algorithm5 {
 			double f_new=0;
 			double df=0;
 
-			for(V v:unvisited_set){	
-				HashSet <V> u=union(v, visited_set);
-
-				//Walk and cost
-				WrapWalkWithLength walk_new;
-				if(USE_CHRISTOFIDES)
-					walk_new=Graph.shortestCoverCostChristofides(start,road_network,exclude(u,iniActiveNodes));
-				else
-					walk_new=Graph.shortestCoverCostGreedy(start,road_network,exclude(u,iniActiveNodes));
-								
-				//System.out.println(walk_new.length+","+walk_new_1.length);					
-
-				double cost_new=walk_new.length;
-				if(mode==1) cost_new+=ChannelDoorToDoor.visit_cost*exclude(u,iniActiveNodes).size(); //cost of adding the new vertex, i.e., approximate shortest walk covering all nodes
-				else if(mode==2) cost_new+=Driver_rg.visit_cost*exclude(u,iniActiveNodes).size();
-
-				//OPTIMIZE PERFORMANCE: method 1
-				//SKIP infeasible nodes to boost speed
-				//Twice fast
-
-				if(ChannelDoorToDoor.prune_mode||Driver_rg.prune_mode){ 
-					//System.out.println(cost_new);
-					if(cost_new>budget) continue;				
+			if(PARALLEL){
+				//SCORE all candidates concurrently, then reduce them in the order of the loop below
+				for(Candidate<V> c:evaluateCandidates(mode, road_network, social_network, start, budget, iniActiveNodes, visited_set, unvisited_set)){
+					if(Double.isNaN(c.influence)) continue; //infeasible
+					df=c.influence-f_bs; //influence changes
+					if (df>=df_max_iter){
+						f_bs=c.influence;
+						node_best_iter=c.node;
+						df_max_iter=df;
+						cost_best_iter=c.cost;
+						walk_best_iter=c.walk;
+					}
 				}
-				//Inflence				
-				f_new=social_network.getExpectedInfluence(u); //influence when adding the new vertex				
-				df=f_new-f_bs; //influence changes
-
-				if (df>=df_max_iter){
-					f_bs=f_new;
-					node_best_iter=v;
-					df_max_iter=df;
-					cost_best_iter=cost_new;
-					walk_best_iter=walk_new.walk;									
-				}else{
-					//System.out.println("worse than:"+fc_max);
+			}else{
+				for(V v:unvisited_set){	
+					//Walk and cost
+					WrapWalkWithLength<V> walk_new=coverWalk(mode, start, road_network, union(v, visited_set), iniActiveNodes);
+					double cost_new=walk_new.length; //cost of adding the new vertex, i.e., approximate shortest walk covering all nodes
+
+					//OPTIMIZE PERFORMANCE: method 1
+					//SKIP infeasible nodes to boost speed
+					//Twice fast
+
+					if(ChannelDoorToDoor.prune_mode||Driver_rg.prune_mode){ 
+						//System.out.println(cost_new);
+						if(cost_new>budget) continue;				
+					}
+					//Inflence				
+					f_new=social_network.getExpectedInfluence(visited_set, v, f_bs+df_max_iter); //influence when adding the new vertex, may stop early below the best so far				
+					df=f_new-f_bs; //influence changes
+
+					if (df>=df_max_iter){
+						f_bs=f_new;
+						node_best_iter=v;
+						df_max_iter=df;
+						cost_best_iter=cost_new;
+						walk_best_iter=walk_new.walk;									
+					}else{
+						//System.out.println("worse than:"+fc_max);
+					}
 				}
 			}
 
@@ -163,53 +125,67 @@ public class Algorithm5 {
 				walk_best=walk_best_iter;
 				visited_set.add(node_best_iter); //ADD the node to visited set
 				unvisited_set.remove(node_best_iter); //REMOVE the node from unvisited set
-				if(mode==1){
-					//Driver_dtd.max_influe+=delta_f_max;
-					ChannelDoorToDoor.budget=cost_best_iter;//Track budget usage
-					ChannelDoorToDoor.visit_set=exclude(visited_set, iniActiveNodes);
-				}else if(mode==2){
-					//Driver_rg.max_influe+=delta_f_max;
-					Driver_rg.budget=cost_best_iter;//Track budget usage
-					Driver_rg.visit_set=exclude(visited_set, iniActiveNodes);					
-				}
+				trackVisit(mode, cost_best_iter, visited_set, iniActiveNodes);
 				//System.out.println(Driver_dtd.visit_set+";"+f_cur+";"+f_new+";"+fc_max_iter+";"+delta_f_max);
 			}else break;			
 		}
 
-		//Adjusted Influence[jair]
-		double influAdj=(visited_set.size()==iniActiveNodes.size())?0:
-			social_network.getExpectedInfluence(visited_set)-social_network.getExpectedInfluence(iniActiveNodes);
-		
-		//System.out.println(influAdj);
-
-		
-		if(mode==1) ChannelDoorToDoor.max_influe=influAdj;
-		else if(mode==2){
-			Driver_rg.max_influe=influAdj;
-		}
+		if(score) trackInfluence(mode, social_network, visited_set, iniActiveNodes);
 		//System.out.println(social_network.getExpectedInfluence(visited_set)-social_network.getExpectedInfluence(iniActiveNodes));
 		return walk_best;		
 	}
 
-	public static <V> HashSet union(V new_node, HashSet <V> active_nodes){
-		HashSet <V> union=new HashSet <V> (active_nodes);		
-		union.add(new_node);
-		return union;		
-	}
+	/**
+	 * Lazy greedy (CELF) version of greedyWalk. Candidates wait in a max-heap by their marginal gain from the round
+	 * they were last evaluated in, which bounds their current gain by submodularity; only the top one is evaluated,
+	 * until one stays on top with a fresh gain. Candidates over budget in prune mode sit out the round only, as the
+	 * approximate cover costs need not grow with the visited set. Unlike the eager loop, gains are taken over the influence of the visited
+	 * set itself, so with a deterministic oracle this picks what textbook greedy picks.
+	 */
+	private static <V> ArrayList <V> lazyGreedyWalk(int mode, Graph<V> road_network, InfluenceModel<V> social_network, 
+			V start, double budget, HashSet <V> iniActiveNodes, HashSet<V> visited_set, HashSet<V> unvisited_set, boolean score) throws Exception {
+		ArrayList <V> walk_best = new ArrayList <V> ();
+		double f_cur=social_network.getExpectedInfluence(visited_set); //influence of the visited set
+
+		PriorityQueue<Candidate<V>> heap=new PriorityQueue<Candidate<V>>();
+		int rank=0;
+		for(V v:unvisited_set){
+			heap.add(new Candidate<V>(v, rank++));
+		}
+
+		ArrayList<Candidate<V>> over=new ArrayList<Candidate<V>>(); //over budget in this round, may fit in a later one
+		for(int round=0; !heap.isEmpty(); round++){
+			//EVALUATE the top candidate until it is fresh
+			Candidate<V> best=null;
+			while(!heap.isEmpty()){
+				Candidate<V> c=heap.poll();
+				if(c.round==round){
+					best=c;
+					break;
+				}
+				WrapWalkWithLength<V> walk_new=coverWalk(mode, start, road_network, union(c.node, visited_set), iniActiveNodes);
+				if((ChannelDoorToDoor.prune_mode||Driver_rg.prune_mode)&&walk_new.length>budget){
+					over.add(c); //keep its stale gain, which still bounds the later ones
+					continue;
+				}
+				c.influence=social_network.getExpectedInfluence(visited_set, c.node);
+				c.cost=walk_new.length;
+				c.walk=walk_new.walk;
+				c.evaluated(c.influence-f_cur, round);
+				heap.add(c);
+			}
+			heap.addAll(over);
+			over.clear();
+
+			if(best==null||best.score<0||best.cost>budget) break;
+			walk_best=best.walk;
+			visited_set.add(best.node); //ADD the node to visited set
+			unvisited_set.remove(best.node); //REMOVE the node from unvisited set
+			f_cur=best.influence;
+			trackVisit(mode, best.cost, visited_set, iniActiveNodes);
+		}
 
-	public static <V> HashSet union( HashSet <V> node_set_1, HashSet <V> node_set_2){
-		HashSet <V> union=new HashSet <V> (node_set_1);
-		//		for (V v: node_set_2){
-		//			union.add(v);		
-		//		}
-		union.addAll(node_set_2);
-		return union;			
-	}	
-	public static <V> HashSet<V> exclude( HashSet <V> node_set_1, HashSet <V> node_set_2){
-		HashSet <V> exclude=new HashSet <V> ();
-		for(V v: node_set_1){
-			if(!node_set_2.contains(v)) exclude.add(v);  
-		}		
-		return exclude;			
+		if(score) trackInfluence(mode, social_network, visited_set, iniActiveNodes);
+		return walk_best;
 	}
 }
@@ -0,0 +1,140 @@
+package mcmo;
+
+/**
+ * Bit-parallel independent cascade (IC) runs over the CSR snapshot of a social network, for one worker thread.
+ * <p>
+ * Bit i of a node's word is its state in run i, so one sweep over the network advances 64 runs at once. An edge is
+ * tried only in the runs where its source is newly active and its target is not active yet, and the outcomes of those
+ * tries are drawn together as one mask of independent Bernoulli bits. The cascade and its count are those of
+ * IcSimulator (every successful try counts), so the two give the same estimator.
+ * @param <V> type of vertex ID
+ */
+public class BitIcSimulator<V> {
+	public static final int LANES=64; //runs per word
+
+	private final CsrGraph<V> csr;
+	private final long[] thresholds; //a try on edge e succeeds iff a uniform 64-bit draw is below thresholds[e], unsigned
+	private final long[] reached; //bit i set if the node is active in run i, in this stage or before
+	private final long[] frontier; //bit i set if the node became active in run i in the last stage
+	private final long[] next; //bit i set if the node is activated in run i in this stage
+	private int[] frontierNodes, nextNodes; //nodes with a nonzero frontier or next word
+	private final int[] touched; //nodes with a nonzero reached word, to clear them for the next batch
+	private int numTouched;
+
+	/**
+	 * @param csr CSR snapshot of the social network
+	 * @param probs activation probability of each edge, aligned with the CSR targets
+	 */
+	public BitIcSimulator(CsrGraph<V> csr, double[] probs) {
+		this.csr=csr;
+		this.thresholds=new long[probs.length];
+		for(int e=0; e<probs.length; e++){
+			double p=probs[e];
+			thresholds[e]=(p>=1)?-1L:(p<=0)?0L:((long) (p*0x1p63))<<1;
+		}
+		int n=csr.size();
+		reached=new long[n];
+		frontier=new long[n];
+		next=new long[n];
+		frontierNodes=new int[n];
+		nextNodes=new int[n];
+		touched=new int[n];
+	}
+
+	public CsrGraph<V> getCsr(){
+		return csr;
+	}
+
+	/**
+	 * Simulate up to 64 cascades at once
+	 * @param seeds indices of seed nodes, distinct; negative entries (nodes not in the network) count but do not spread
+	 * @param maxStages max number of stages
+	 * @param lanes mask of the runs to simulate, e.g., -1L for all 64
+	 * @param random random number generator of the calling worker
+	 * @return total influence of the runs, i.e., number of seeds plus successful activations summed over the runs
+	 */
+	public long simulate(int[] seeds, int maxStages, long lanes, SplitMix64 random){
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		clear();
+
+		long influence=(long) seeds.length*Long.bitCount(lanes);
+		int size=0;
+		for(int s: seeds){
+			if(s<0) continue;
+			reached[s]=lanes;
+			frontier[s]=lanes;
+			touched[numTouched++]=s;
+			frontierNodes[size++]=s;
+		}
+
+		for (int stage=0; stage<maxStages&&size>0; stage++){
+			int nextSize=0;
+			for(int i=0; i<size; i++){
+				int v=frontierNodes[i];
+				long f=frontier[v];
+				for(int e=offsets[v]; e<offsets[v+1]; e++){
+					int nb=targets[e];
+					long tries=f&~reached[nb];
+					if(tries==0) continue;
+					long t=thresholds[e];
+					long hits=bernoulli(tries, t, Long.numberOfTrailingZeros(t), random);
+					if(hits==0) continue;
+					influence+=Long.bitCount(hits);
+					if(next[nb]==0) nextNodes[nextSize++]=nb;
+					next[nb]|=hits;
+				}
+			}
+
+			//Newly infected nodes become the active ones
+			for(int i=0; i<size; i++){
+				frontier[frontierNodes[i]]=0;
+			}
+			for(int i=0; i<nextSize; i++){
+				int v=nextNodes[i];
+				if(reached[v]==0) touched[numTouched++]=v;
+				reached[v]|=next[v];
+				frontier[v]=next[v];
+				next[v]=0;
+			}
+			int[] tmp=frontierNodes;
+			frontierNodes=nextNodes;
+			nextNodes=tmp;
+			size=nextSize;
+		}
+		for(int i=0; i<size; i++){
+			frontier[frontierNodes[i]]=0;
+		}
+		return influence;
+	}
+
+	/**
+	 * Draw the outcomes of a set of tries at once. Each try compares its own uniform 64-bit number to the threshold,
+	 * most significant bit first, and a try is decided at the first bit where the two differ; a fresh random word
+	 * supplies that bit of all undecided tries, so a mask takes about log2(tries)+2 words.
+	 * @param tries mask of the tries
+	 * @param t threshold, unsigned
+	 * @param low lowest set bit of t, 64 if t is zero
+	 * @param random random number generator of the calling worker
+	 * @return mask of the successful tries
+	 */
+	private static long bernoulli(long tries, long t, int low, SplitMix64 random){
+		long undecided=tries, hits=0;
+		for(int b=63; b>=low&&undecided!=0; b--){
+			long r=random.nextLong();
+			if(((t>>>b)&1)!=0){
+				hits|=undecided&~r; //draw bit 0 where t has 1: below t
+				undecided&=r;
+			}
+			else undecided&=~r; //draw bit 1 where t has 0: above t
+		}
+		return hits;
+	}
+
+	private void clear(){
+		for(int i=0; i<numTouched; i++){
+			reached[touched[i]]=0;
+		}
+		numTouched=0;
+	}
+}
@@ -0,0 +1,45 @@
+package mcmo;
+
+import java.util.ArrayList;
+
+/**
+ * A candidate node of a greedy walk with its last evaluation: the walk covering the visited set plus the node, and the
+ * influence of both. In a lazy greedy (CELF) walk, its score is from the last round it was evaluated in; as marginal
+ * gains only shrink while the visited set grows, a stale score bounds the current one, so a candidate that is on top
+ * of the heap with a fresh score is the best of the round.
+ * @param <V> type of vertex ID
+ */
+public class Candidate<V> implements Comparable<Candidate<V>> {
+	public final V node;
+	public final int rank; //position in the order of the eager loop, which keeps the later of equal candidates
+	public double score=Double.POSITIVE_INFINITY; //not evaluated yet
+	public int round=-1; //round of the last evaluation
+	public double influence; //influence of the visited set plus the node, at the last evaluation; NaN if over budget
+	public double cost; //cost of the walk covering them
+	public ArrayList<V> walk;
+
+	public Candidate(V node, int rank) {
+		this.node=node;
+		this.rank=rank;
+	}
+
+	/**
+	 * Record an evaluation
+	 * @param score marginal gain; NaN counts as no gain at all
+	 * @param round current round
+	 */
+	public void evaluated(double score, int round){
+		this.score=Double.isNaN(score)?Double.NEGATIVE_INFINITY:score;
+		this.round=round;
+	}
+
+	/**
+	 * Higher scores first, then later ranks
+	 */
+	@Override
+	public int compareTo(Candidate<V> o){
+		int c=Double.compare(o.score, score);
+		if(c!=0) return c;
+		return (rank>o.rank)?-1:(rank<o.rank)?1:0;
+	}
+}
@@ -16,7 +16,7 @@ import java.util.Stack;
  * @author zhangh24
  *
  */
-public class ChannelDoorToDoor implements Channel{
+public class ChannelDoorToDoor implements ProgressiveChannel{
 	public static double max_budget;
 	public static double visit_cost;
 	public static int max_iteration;
@@ -66,11 +66,24 @@ public class ChannelDoorToDoor implements Channel{
 		//Initial active node set
 		if (test_case) iniSet.add("A");
 		else iniSet.add("188397");
+
+		GreedyWalks.attachDistanceCache(roadNet, sociNet, source);
 		System.out.println(">>Commission:"+this.COMMISSION);
 		
 	}	
 
 	public double getAdoption(double queryBudget) throws Exception {
+		return planWalk(queryBudget, true);
+	}
+
+	/**
+	 * Plan the walk at a budget, tracking its visited set and budget usage
+	 * @param queryBudget budget
+	 * @param score whether to estimate the influence of the walk as well
+	 * @return adoption of the walk, NaN if not scored
+	 * @throws Exception
+	 */
+	private double planWalk(double queryBudget, boolean score) throws Exception {
 		double adoption=0;	
 
 		//1st argument specify algorithm
@@ -217,7 +230,7 @@ public class ChannelDoorToDoor implements Channel{
 
 					// GCB
 					if (algo.equals("gcb"))
-						walk_gcb = Algorithm4.greedyWalk(MODE, roadNet, soci_model, source, target, max_budget,	iniSet);
+						walk_gcb = Algorithm4.greedyWalk(MODE, roadNet, soci_model, source, target, max_budget,	iniSet, score);
 					double influe_gcb=max_influe;
 					double budget_gcb=budget;
 					HashSet visit_set_gcb=new HashSet(visit_set);										
@@ -226,7 +239,7 @@ public class ChannelDoorToDoor implements Channel{
 
 					// GR
 					if (algo.equals("gr"))
-						walk_gr = Algorithm5.greedyWalk(MODE, roadNet, soci_model, source, target, max_budget, iniSet);
+						walk_gr = Algorithm5.greedyWalk(MODE, roadNet, soci_model, source, target, max_budget, iniSet, score);
 
 					if(max_influe>influe_gcb){
 						adoption= max_influe;
@@ -336,6 +349,40 @@ public class ChannelDoorToDoor implements Channel{
 		//			}
 		//		}
 
-		return adoption;
+		return score?adoption:Double.NaN;
+	}
+
+	/**
+	 * Plan the walk as getAdoption does, without estimating its influence, then estimate its adoption progressively:
+	 * the influence of the visited and initially active nodes minus that of the initially active ones, refined a batch
+	 * of runs at a time. Estimates the planning already made in full come from the influence cache.
+	 * @param queryBudget budget
+	 * @return stream of estimates of the adoption
+	 * @throws Exception
+	 */
+	@SuppressWarnings("unchecked")
+	public Estimate.Stream getAdoptionProgress(double queryBudget) throws Exception {
+		planWalk(queryBudget, false);
+		if(visit_set.isEmpty()) return Estimate.single(Estimate.exact(0));
+
+		HashSet <String> visited=new HashSet <String> (visit_set);
+		visited.addAll(iniSet);
+		final Estimate.Stream with=soci_model.getProgressiveInfluence(visited);
+		final Estimate.Stream without=soci_model.getProgressiveInfluence(iniSet);
+		return new Estimate.Stream(){
+			private Estimate a, b;
+
+			@Override
+			public boolean hasNext(){
+				return with.hasNext()||without.hasNext();
+			}
+
+			@Override
+			public Estimate next() throws Exception{
+				if(with.hasNext()) a=with.next();
+				if(without.hasNext()) b=without.next();
+				return a.minus(b);
+			}
+		};
 	}
 }
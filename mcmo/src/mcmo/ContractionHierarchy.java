@@ -0,0 +1,714 @@
+package mcmo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A contraction hierarchy (CH) index of a road network for fast shortest distance queries.
+ * <p>
+ * Preprocessing contracts the vertices one by one in order of importance (edge difference plus number of contracted
+ * neighbors): a contracted vertex is removed, and a shortcut u->x is added for each path u->v->x through it unless a
+ * bounded witness search finds a path at least as short that avoids it. Afterwards any shortest path can be found by
+ * a search from the source that only goes up in the order and a search to the target that only comes down.
+ * Each vertex keeps its upward out-going edges (for the forward search) and its upward in-coming edges (for the
+ * backward search), which are small compared to the whole graph.
+ * <p>
+ * Queries are point-to-point (bidirectional upward search) and many-to-many: a backward search from every target
+ * leaves its distances in buckets at the vertices it reaches, and a forward search from every source then scans
+ * the buckets of the vertices it reaches. The index is immutable and safe to use from many threads. Road networks do
+ * not change between campaigns, so the index is built once and saved to disk.
+ * @param <V> type of vertex ID
+ */
+public class ContractionHierarchy<V> {
+	private static final int FILE_VERSION=1;
+	private static final int WITNESS_SETTLE_LIMIT=500; //a witness search giving up only adds a needless shortcut
+	private static final int SIMULATION_SETTLE_LIMIT=50; //cheaper witness searches when only estimating the priority
+
+	private final ArrayList<V> vertices; //index -> vertex ID, same order as the CSR snapshot
+	private final HashMap<V, Integer> index; //vertex ID -> index
+	private final long fingerprint; //of the graph the index was built on
+	private final int[] upOffsets, upTargets; //edges u->x with x higher than u
+	private final double[] upWeights;
+	private final int[] downOffsets, downTargets; //edges x->u with x higher than u, stored at u as x
+	private final double[] downWeights;
+	private final ThreadLocal<Workspace> workspaces, backWorkspaces;
+
+	/**
+	 * Build the index of a graph. Takes a while on a large network; save it for later runs.
+	 * @param graph road network
+	 */
+	public ContractionHierarchy(Graph<V> graph) {
+		CsrGraph<V> csr=graph.getCsr();
+		int n=csr.size();
+		vertices=new ArrayList<V>(n);
+		for(int i=0; i<n; i++){
+			vertices.add(csr.vertexAt(i));
+		}
+		index=buildIndex(vertices);
+		fingerprint=fingerprint(csr);
+
+		//COPY the graph into adjacency lists which can take shortcuts; parallel edges keep the shortest
+		AdjacencyList[] out=new AdjacencyList[n];
+		AdjacencyList[] in=new AdjacencyList[n];
+		for(int i=0; i<n; i++){
+			out[i]=new AdjacencyList();
+			in[i]=new AdjacencyList();
+		}
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		double[] weights=csr.getWeights();
+		for(int u=0; u<n; u++){
+			for(int e=offsets[u]; e<offsets[u+1]; e++){
+				if(targets[e]==u) continue; //a self loop is never on a shortest path
+				out[u].put(targets[e], weights[e]);
+				in[targets[e]].put(u, weights[e]);
+			}
+		}
+
+		//CONTRACT vertices in order of priority, which is updated lazily: a polled vertex whose priority went up is put back
+		Contractor c=new Contractor(n, out, in);
+		IndexedMinHeap Q=new IndexedMinHeap(n);
+		for(int v=0; v<n; v++){
+			Q.insert(v, c.priority(v));
+		}
+		AdjacencyList[] up=new AdjacencyList[n];
+		AdjacencyList[] down=new AdjacencyList[n];
+		while(!Q.isEmpty()){
+			int v=Q.poll();
+			double p=c.priority(v);
+			if(!Q.isEmpty()&&p>Q.keyOf(Q.peek())){
+				Q.insert(v, p);
+				continue;
+			}
+
+			//Edges to the vertices still in the graph are exactly those going up from v
+			up[v]=c.remaining(out[v]);
+			down[v]=c.remaining(in[v]);
+			c.contract(v);
+		}
+
+		int[][] upCsr=toCsr(up);
+		upOffsets=upCsr[0];
+		upTargets=upCsr[1];
+		upWeights=toWeights(up, upTargets.length);
+		int[][] downCsr=toCsr(down);
+		downOffsets=downCsr[0];
+		downTargets=downCsr[1];
+		downWeights=toWeights(down, downTargets.length);
+		workspaces=newWorkspaces(n);
+		backWorkspaces=newWorkspaces(n);
+	}
+
+	private ContractionHierarchy(ArrayList<V> vertices, long fingerprint, int[] upOffsets, int[] upTargets, double[] upWeights,
+			int[] downOffsets, int[] downTargets, double[] downWeights) {
+		this.vertices=vertices;
+		this.index=buildIndex(vertices);
+		this.fingerprint=fingerprint;
+		this.upOffsets=upOffsets;
+		this.upTargets=upTargets;
+		this.upWeights=upWeights;
+		this.downOffsets=downOffsets;
+		this.downTargets=downTargets;
+		this.downWeights=downWeights;
+		workspaces=newWorkspaces(vertices.size());
+		backWorkspaces=newWorkspaces(vertices.size());
+	}
+
+	/**
+	 * Load the index of a graph from a file if it was built on the same graph, otherwise build it and save it to the file
+	 * @param graph road network
+	 * @param file index file
+	 * @return the index
+	 */
+	public static ContractionHierarchy<String> loadOrBuild(Graph<String> graph, String file){
+		if(new File(file).exists()){
+			try {
+				ContractionHierarchy<String> ch=load(file);
+				if(ch.isBuiltOn(graph)) return ch;
+			} catch (IOException e) {
+				System.out.println("Error while reading contraction hierarchy, rebuilding !!!");
+				e.printStackTrace();
+			}
+		}
+
+		ContractionHierarchy<String> ch=new ContractionHierarchy<String>(graph);
+		try {
+			ch.save(file);
+		} catch (IOException e) {
+			System.out.println("Error while writing contraction hierarchy !!!");
+			e.printStackTrace();
+		}
+		return ch;
+	}
+
+	/**
+	 * Whether this index was built on a graph with the same vertices, edges and weights
+	 * @param graph graph
+	 * @return true if the index answers queries on the graph
+	 */
+	public boolean isBuiltOn(Graph<V> graph){
+		CsrGraph<V> csr=graph.getCsr();
+		if(csr.size()!=vertices.size()) return false;
+		for(int i=0; i<vertices.size(); i++){
+			if(!vertices.get(i).equals(csr.vertexAt(i))) return false;
+		}
+		return fingerprint==fingerprint(csr);
+	}
+
+	/**
+	 * Save the index to a file; vertex IDs are written as strings
+	 * @param file index file
+	 * @throws IOException
+	 */
+	public void save(String file) throws IOException{
+		DataOutputStream out=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(FILE_VERSION);
+			out.writeLong(fingerprint);
+			out.writeInt(vertices.size());
+			for(V v: vertices){
+				out.writeUTF(v.toString());
+			}
+			writeArray(out, upOffsets);
+			writeArray(out, upTargets);
+			writeArray(out, upWeights);
+			writeArray(out, downOffsets);
+			writeArray(out, downTargets);
+			writeArray(out, downWeights);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Load an index saved by save
+	 * @param file index file
+	 * @return the index, with string vertex IDs
+	 * @throws IOException
+	 */
+	public static ContractionHierarchy<String> load(String file) throws IOException{
+		DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if(in.readInt()!=FILE_VERSION) throw new IOException("Unsupported contraction hierarchy file: "+file);
+			long fingerprint=in.readLong();
+			int n=in.readInt();
+			ArrayList<String> vertices=new ArrayList<String>(n);
+			for(int i=0; i<n; i++){
+				vertices.add(in.readUTF());
+			}
+			int[] upOffsets=readIntArray(in);
+			int[] upTargets=readIntArray(in);
+			double[] upWeights=readDoubleArray(in);
+			int[] downOffsets=readIntArray(in);
+			int[] downTargets=readIntArray(in);
+			double[] downWeights=readDoubleArray(in);
+			return new ContractionHierarchy<String>(vertices, fingerprint, upOffsets, upTargets, upWeights,
+					downOffsets, downTargets, downWeights);
+		} finally {
+			in.close();
+		}
+	}
+
+	public int size(){
+		return vertices.size();
+	}
+
+	/**
+	 * @return number of edges kept in the hierarchy, i.e., original edges plus shortcuts
+	 */
+	public int edgeCount(){
+		return upTargets.length+downTargets.length;
+	}
+
+	/**
+	 * Get index of a vertex
+	 * @param vertex vertex ID
+	 * @return index of the vertex, or -1 if it is not in the graph
+	 */
+	public int indexOf(V vertex){
+		Integer i=index.get(vertex);
+		return (i==null)?-1:i;
+	}
+
+	/**
+	 * Point-to-point shortest distance
+	 * @param source source vertex
+	 * @param target target vertex
+	 * @return shortest distance, infinity if not reachable
+	 */
+	public double getDistance(V source, V target){
+		int s=indexOf(source), t=indexOf(target);
+		if(s<0||t<0) return Double.POSITIVE_INFINITY;
+		return getDistance(s, t);
+	}
+
+	/**
+	 * Point-to-point shortest distance: upward searches from both ends, each stopping once its queue head is no
+	 * shorter than the best meeting found
+	 * @param source index of source vertex
+	 * @param target index of target vertex
+	 * @return shortest distance, infinity if not reachable
+	 */
+	public double getDistance(int source, int target){
+		if(source==target) return 0;
+		Workspace f=workspaces.get();
+		Workspace b=backWorkspaces.get();
+		f.start(source);
+		b.start(target);
+
+		double best=Double.POSITIVE_INFINITY;
+		while(true){
+			boolean moreF=!f.heap.isEmpty()&&f.heap.keyOf(f.heap.peek())<best;
+			boolean moreB=!b.heap.isEmpty()&&b.heap.keyOf(b.heap.peek())<best;
+			if(!moreF&&!moreB) break;
+
+			//Expand the side with the smaller head
+			boolean forward=moreF&&(!moreB||f.heap.keyOf(f.heap.peek())<=b.heap.keyOf(b.heap.peek()));
+			Workspace w=forward?f:b;
+			Workspace other=forward?b:f;
+			int u=forward?f.settle(upOffsets, upTargets, upWeights):b.settle(downOffsets, downTargets, downWeights);
+			if(other.reached(u)&&w.dist[u]+other.dist[u]<best) best=w.dist[u]+other.dist[u];
+		}
+		f.heap.clear();
+		b.heap.clear();
+		return best;
+	}
+
+	/**
+	 * Many-to-many shortest distances by bucket-based search
+	 * @param sources source vertices
+	 * @param targets target vertices
+	 * @return dist[i][j] is the shortest distance from sources[i] to targets[j], infinity if not reachable
+	 */
+	public double[][] getDistances(List<V> sources, List<V> targets){
+		int[] s=new int[sources.size()];
+		for(int i=0; i<s.length; i++){
+			s[i]=indexOf(sources.get(i));
+		}
+		int[] t=new int[targets.size()];
+		for(int j=0; j<t.length; j++){
+			t[j]=indexOf(targets.get(j));
+		}
+		return getDistances(s, t);
+	}
+
+	/**
+	 * Many-to-many shortest distances by bucket-based search
+	 * @param sources indices of source vertices, -1 for a vertex not in the graph
+	 * @param targets indices of target vertices, -1 for a vertex not in the graph
+	 * @return dist[i][j] is the shortest distance from sources[i] to targets[j], infinity if not reachable
+	 */
+	public double[][] getDistances(int[] sources, int[] targets){
+		double[][] dist=new double[sources.length][targets.length];
+		for(double[] row: dist){
+			Arrays.fill(row, Double.POSITIVE_INFINITY);
+		}
+
+		//FILL buckets: the backward search from each target leaves (target, distance) at every vertex it reaches
+		Workspace b=backWorkspaces.get();
+		IntList entryVertex=new IntList();
+		IntList entryTarget=new IntList();
+		DoubleList entryDist=new DoubleList();
+		for(int j=0; j<targets.length; j++){
+			if(targets[j]<0) continue;
+			b.start(targets[j]);
+			while(!b.heap.isEmpty()){
+				int u=b.settle(downOffsets, downTargets, downWeights);
+				entryVertex.add(u);
+				entryTarget.add(j);
+				entryDist.add(b.dist[u]);
+			}
+		}
+
+		//GROUP the entries by vertex, i.e., counting sort, with the workspace stamps marking vertices holding a bucket
+		b.nextEpoch();
+		int[] start=b.bucketStart;
+		int[] end=b.bucketEnd;
+		for(int k=0; k<entryVertex.size; k++){
+			int u=entryVertex.get(k);
+			if(!b.reached(u)){
+				b.stamp[u]=b.epoch;
+				end[u]=0;
+			}
+			end[u]++;
+		}
+		int pos=0;
+		for(int k=0; k<entryVertex.size; k++){
+			int u=entryVertex.get(k);
+			if(end[u]<0) continue; //already placed
+			start[u]=pos;
+			pos+=end[u];
+			end[u]=-1;
+		}
+		int[] bucketTarget=new int[entryVertex.size];
+		double[] bucketDist=new double[entryVertex.size];
+		for(int k=0; k<entryVertex.size; k++){
+			int u=entryVertex.get(k);
+			if(end[u]<0) end[u]=start[u];
+			bucketTarget[end[u]]=entryTarget.get(k);
+			bucketDist[end[u]]=entryDist.get(k);
+			end[u]++;
+		}
+
+		//SCAN buckets: the forward search from each source combines its distance with those left in the buckets
+		Workspace f=workspaces.get();
+		for(int i=0; i<sources.length; i++){
+			if(sources[i]<0) continue;
+			double[] row=dist[i];
+			f.start(sources[i]);
+			while(!f.heap.isEmpty()){
+				int u=f.settle(upOffsets, upTargets, upWeights);
+				if(!b.reached(u)) continue;
+				double du=f.dist[u];
+				for(int at=start[u]; at<end[u]; at++){
+					double alt=du+bucketDist[at];
+					if(alt<row[bucketTarget[at]]) row[bucketTarget[at]]=alt;
+				}
+			}
+		}
+		for(int i=0; i<sources.length; i++){
+			for(int j=0; j<targets.length; j++){
+				if(sources[i]>=0&&sources[i]==targets[j]) dist[i][j]=0;
+			}
+		}
+		return dist;
+	}
+
+	private static <V> HashMap<V, Integer> buildIndex(ArrayList<V> vertices){
+		HashMap<V, Integer> index=new HashMap<V, Integer>(2*vertices.size());
+		for(int i=0; i<vertices.size(); i++){
+			index.put(vertices.get(i), i);
+		}
+		return index;
+	}
+
+	/**
+	 * Hash of the edges and weights of a CSR snapshot, to tell whether a saved index is stale
+	 */
+	private static long fingerprint(CsrGraph<?> csr){
+		long h=csr.size();
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		double[] weights=csr.getWeights();
+		for(int u=0; u<csr.size(); u++){
+			for(int e=offsets[u]; e<offsets[u+1]; e++){
+				h=31*h+u;
+				h=31*h+targets[e];
+				h=31*h+Double.doubleToLongBits(weights[e]);
+			}
+		}
+		return h;
+	}
+
+	private static int[][] toCsr(AdjacencyList[] lists){
+		int[] offsets=new int[lists.length+1];
+		for(int i=0; i<lists.length; i++){
+			offsets[i+1]=offsets[i]+lists[i].size;
+		}
+		int[] targets=new int[offsets[lists.length]];
+		for(int i=0; i<lists.length; i++){
+			System.arraycopy(lists[i].to, 0, targets, offsets[i], lists[i].size);
+		}
+		return new int[][]{offsets, targets};
+	}
+
+	private static double[] toWeights(AdjacencyList[] lists, int m){
+		double[] weights=new double[m];
+		int pos=0;
+		for(AdjacencyList l: lists){
+			System.arraycopy(l.w, 0, weights, pos, l.size);
+			pos+=l.size;
+		}
+		return weights;
+	}
+
+	private static void writeArray(DataOutputStream out, int[] a) throws IOException{
+		out.writeInt(a.length);
+		for(int x: a){
+			out.writeInt(x);
+		}
+	}
+
+	private static void writeArray(DataOutputStream out, double[] a) throws IOException{
+		out.writeInt(a.length);
+		for(double x: a){
+			out.writeDouble(x);
+		}
+	}
+
+	private static int[] readIntArray(DataInputStream in) throws IOException{
+		int[] a=new int[in.readInt()];
+		for(int i=0; i<a.length; i++){
+			a[i]=in.readInt();
+		}
+		return a;
+	}
+
+	private static double[] readDoubleArray(DataInputStream in) throws IOException{
+		double[] a=new double[in.readInt()];
+		for(int i=0; i<a.length; i++){
+			a[i]=in.readDouble();
+		}
+		return a;
+	}
+
+	private static ThreadLocal<Workspace> newWorkspaces(final int n){
+		return new ThreadLocal<Workspace>(){
+			@Override
+			protected Workspace initialValue(){
+				return new Workspace(n);
+			}
+		};
+	}
+
+	/**
+	 * Growable adjacency list of one vertex, keeping one (the shortest) edge per neighbor
+	 */
+	private static class AdjacencyList {
+		int[] to=new int[4];
+		double[] w=new double[4];
+		int size;
+
+		void put(int x, double weight){
+			for(int k=0; k<size; k++){
+				if(to[k]==x){
+					if(weight<w[k]) w[k]=weight;
+					return;
+				}
+			}
+			if(size==to.length){
+				to=Arrays.copyOf(to, 2*size);
+				w=Arrays.copyOf(w, 2*size);
+			}
+			to[size]=x;
+			w[size]=weight;
+			size++;
+		}
+
+		void remove(int x){
+			for(int k=0; k<size; k++){
+				if(to[k]==x){
+					size--;
+					to[k]=to[size];
+					w[k]=w[size];
+					return;
+				}
+			}
+		}
+	}
+
+	private static class DoubleList {
+		double[] a=new double[16];
+		int size;
+
+		void add(double x){
+			if(size==a.length) a=Arrays.copyOf(a, 2*size);
+			a[size++]=x;
+		}
+
+		double get(int k){
+			return a[k];
+		}
+	}
+
+	private static class IntList {
+		int[] a=new int[16];
+		int size;
+
+		void add(int x){
+			if(size==a.length) a=Arrays.copyOf(a, 2*size);
+			a[size++]=x;
+		}
+
+		int get(int k){
+			return a[k];
+		}
+	}
+
+	/**
+	 * Contraction state: the remaining graph and a workspace for witness searches in it
+	 */
+	private static class Contractor {
+		final AdjacencyList[] out, in;
+		final boolean[] contracted;
+		final int[] contractedNeighbors;
+		final int[] level; //1 + highest level of a contracted neighbor, i.e., depth of the hierarchy below a vertex
+		final int[] targetMark; //out-neighbors of the vertex being contracted are marked with targetEpoch
+		int targetEpoch;
+		final Workspace w;
+
+		Contractor(int n, AdjacencyList[] out, AdjacencyList[] in){
+			this.out=out;
+			this.in=in;
+			contracted=new boolean[n];
+			contractedNeighbors=new int[n];
+			level=new int[n];
+			targetMark=new int[n];
+			w=new Workspace(n);
+		}
+
+		/**
+		 * Copy of an adjacency list; contracted vertices are removed from the lists, so all its edges lead to the remaining graph
+		 */
+		AdjacencyList remaining(AdjacencyList list){
+			AdjacencyList res=new AdjacencyList();
+			res.to=Arrays.copyOf(list.to, list.size);
+			res.w=Arrays.copyOf(list.w, list.size);
+			res.size=list.size;
+			return res;
+		}
+
+		/**
+		 * Importance of a vertex: shortcuts its contraction would add less edges it would remove (edge difference),
+		 * plus contracted neighbors and level, which spread the contraction evenly over the graph
+		 */
+		double priority(int v){
+			int removed=out[v].size+in[v].size;
+			return 2*(shortcuts(v, false)-removed)+contractedNeighbors[v]+level[v];
+		}
+
+		/**
+		 * Remove a vertex from the remaining graph, adding the shortcuts it needs
+		 */
+		void contract(int v){
+			shortcuts(v, true);
+			contracted[v]=true;
+			for(int k=0; k<out[v].size; k++){
+				int x=out[v].to[k];
+				in[x].remove(v);
+				contractedNeighbors[x]++;
+				level[x]=Math.max(level[x], level[v]+1);
+			}
+			for(int k=0; k<in[v].size; k++){
+				int u=in[v].to[k];
+				out[u].remove(v);
+				contractedNeighbors[u]++;
+				level[u]=Math.max(level[u], level[v]+1);
+			}
+		}
+
+		/**
+		 * Find the shortcuts needed to contract a vertex, i.e., paths u->v->x with no witness path avoiding v
+		 * @param v vertex
+		 * @param add whether to add them to the graph, or only count them
+		 * @return number of shortcuts
+		 */
+		int shortcuts(int v, boolean add){
+			int count=0;
+			double maxOut=0;
+			targetEpoch++;
+			for(int k=0; k<out[v].size; k++){
+				maxOut=Math.max(maxOut, out[v].w[k]);
+				targetMark[out[v].to[k]]=targetEpoch;
+			}
+			for(int a=0; a<in[v].size; a++){
+				int u=in[v].to[a];
+				double wu=in[v].w[a];
+				int targets=out[v].size-((targetMark[u]==targetEpoch)?1:0);
+				witnessSearch(u, v, wu+maxOut, targets, add?WITNESS_SETTLE_LIMIT:SIMULATION_SETTLE_LIMIT);
+				for(int b=0; b<out[v].size; b++){
+					int x=out[v].to[b];
+					if(x==u) continue;
+					double via=wu+out[v].w[b];
+					if(w.reached(x)&&w.dist[x]<=via) continue;
+					count++;
+					if(add){
+						out[u].put(x, via);
+						in[x].put(u, via);
+					}
+				}
+			}
+			return count;
+		}
+
+		/**
+		 * Bounded Dijkstra from u in the remaining graph without v, stopping once all marked targets are settled
+		 */
+		void witnessSearch(int u, int v, double maxDist, int targets, int settleLimit){
+			w.start(u);
+			int settled=0;
+			while(!w.heap.isEmpty()&&settled<settleLimit&&targets>0){
+				int y=w.heap.poll();
+				settled++;
+				if(w.dist[y]>maxDist) break;
+				if(y!=u&&targetMark[y]==targetEpoch) targets--;
+				for(int k=0; k<out[y].size; k++){
+					int z=out[y].to[k];
+					if(z==v) continue;
+					w.relax(y, z, out[y].w[k]);
+				}
+			}
+			w.heap.clear();
+		}
+	}
+
+	/**
+	 * Per-thread scratch space of a search, valid where the stamp equals the current epoch (see ShortestPathEngine)
+	 */
+	private static class Workspace {
+		final double[] dist;
+		final int[] stamp;
+		final int[] bucketStart, bucketEnd; //range of the bucket of a vertex in a many-to-many query
+		final IndexedMinHeap heap;
+		int epoch;
+
+		Workspace(int n){
+			dist=new double[n];
+			bucketStart=new int[n];
+			bucketEnd=new int[n];
+			stamp=new int[n];
+			heap=new IndexedMinHeap(n);
+		}
+
+		void nextEpoch(){
+			epoch++;
+			if(epoch==Integer.MAX_VALUE){ //wrap around
+				Arrays.fill(stamp, 0);
+				epoch=1;
+			}
+		}
+
+		boolean reached(int u){
+			return stamp[u]==epoch;
+		}
+
+		void start(int source){
+			heap.clear();
+			nextEpoch();
+			dist[source]=0;
+			stamp[source]=epoch;
+			heap.insert(source, 0);
+		}
+
+		void relax(int u, int v, double weight){
+			double alt=dist[u]+weight;
+			if(stamp[v]!=epoch||alt<dist[v]){
+				dist[v]=alt;
+				stamp[v]=epoch;
+				heap.insertOrDecrease(v, alt);
+			}
+		}
+
+		/**
+		 * Settle the vertex at the queue head and relax its edges in the given upward graph
+		 * @return the settled vertex
+		 */
+		int settle(int[] offsets, int[] targets, double[] weights){
+			int u=heap.poll();
+			for(int e=offsets[u]; e<offsets[u+1]; e++){
+				relax(u, targets[e], weights[e]);
+			}
+			return u;
+		}
+	}
+}
@@ -0,0 +1,347 @@
+package mcmo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An immutable compressed sparse row (CSR) snapshot of a graph. Vertex IDs are interned to int indices 0..n-1,
+ * following the insertion order of the graph's vertex list, and the out-going edges of vertex i are stored in
+ * targets[offsets[i]] .. targets[offsets[i+1]-1] with matching weights, in the same order as the adjacency list.
+ * <p>
+ * Vertex coordinates, if loaded, are kept as well and give a straight-line lower bound for A* routing.
+ * @param <V> type of vertex ID
+ */
+public class CsrGraph<V> {
+	private static final double EARTH_RADIUS_MI=3958.8;
+
+	private final int[] offsets; //row offsets, length n+1
+	private final int[] targets; //column indices, i.e., end vertex of each edge
+	private final double[] weights; //edge weights aligned with targets
+	private final double[] probs; //activation probabilities aligned with targets, NaN where an edge has none
+	private final int[] sortedTargets; //targets of each row in increasing order, for binary search
+	private final double[] sortedWeights; //weights aligned with sortedTargets
+	private final ArrayList<V> vertices; //index -> vertex ID
+	private final HashMap<V, Integer> index; //vertex ID -> index
+	private final boolean directed;
+	private final double[] xs, ys; //coordinates, or longitude/latitude in radians if geographic; null if some vertex has none
+	private final double[] cosYs; //cosine of latitude, for haversine; null if not geographic
+	private final boolean geographic; //whether coordinates look like longitude/latitude degrees
+	private double heuristicScale=-1; //computed on first use
+	private ShortestPathEngine<V> engine; //created on first use
+	private CsrGraph<V> reverse; //transpose, created on first use
+
+	/**
+	 * Build a CSR snapshot of a graph. Later changes to the graph are not reflected.
+	 * @param graph the graph
+	 */
+	public CsrGraph(Graph<V> graph) {
+		directed=graph.isDirected();
+		int n=graph.getVertexList().size();
+		vertices=new ArrayList<V>(n);
+		index=new HashMap<V, Integer>(2*n);
+		for(V v: graph.getVertexList().keySet()){
+			index.put(v, vertices.size());
+			vertices.add(v);
+		}
+
+		offsets=new int[n+1];
+		for(int i=0; i<n; i++){
+			offsets[i+1]=offsets[i]+graph.getEdges(vertices.get(i)).size();
+		}
+
+		targets=new int[offsets[n]];
+		weights=new double[offsets[n]];
+		probs=new double[offsets[n]];
+		for(int i=0; i<n; i++){
+			int pos=offsets[i];
+			for(Edge<V> e: graph.getEdges(vertices.get(i))){
+				targets[pos]=index.get(e.getVertex());
+				weights[pos]=e.getWeight();
+				probs[pos]=e.getActivateProb();
+				pos++;
+			}
+		}
+
+		sortedTargets=new int[offsets[n]];
+		sortedWeights=new double[offsets[n]];
+		sortRows(offsets, targets, weights, sortedTargets, sortedWeights);
+
+		//COPY coordinates; isolated vertices (e.g., added from the node list only) may lack them
+		boolean[] touched=new boolean[n];
+		for(int i=0; i<n; i++){
+			touched[i]|=degree(i)>0;
+			for(int e=offsets[i]; e<offsets[i+1]; e++){
+				touched[targets[e]]=true;
+			}
+		}
+		boolean complete=true, lonLat=true;
+		for(int i=0; i<n&&complete; i++){
+			Vertex<?> vx=graph.getVertexList().get(vertices.get(i));
+			if(!vx.hasCoordinates()){
+				complete=!touched[i];
+				continue;
+			}
+			lonLat&=Math.abs(vx.getX())<=180&&Math.abs(vx.getY())<=90;
+		}
+		if(complete){
+			xs=new double[n];
+			ys=new double[n];
+			for(int i=0; i<n; i++){
+				Vertex<?> vx=graph.getVertexList().get(vertices.get(i));
+				xs[i]=lonLat?Math.toRadians(vx.getX()):vx.getX();
+				ys[i]=lonLat?Math.toRadians(vx.getY()):vx.getY();
+			}
+			geographic=lonLat;
+			if(lonLat){
+				cosYs=new double[n];
+				for(int i=0; i<n; i++){
+					cosYs[i]=Math.cos(ys[i]);
+				}
+			}
+			else cosYs=null;
+		}
+		else{
+			xs=null;
+			ys=null;
+			cosYs=null;
+			geographic=false;
+		}
+	}
+
+	/**
+	 * Build the transpose of a CSR graph, i.e., every edge u->v becomes v->u. Vertex indices are shared.
+	 */
+	private CsrGraph(CsrGraph<V> forward) {
+		directed=forward.directed;
+		vertices=forward.vertices;
+		index=forward.index;
+		xs=forward.xs;
+		ys=forward.ys;
+		cosYs=forward.cosYs;
+		geographic=forward.geographic;
+		int n=vertices.size();
+		int m=forward.targets.length;
+
+		offsets=new int[n+1];
+		for(int e=0; e<m; e++){
+			offsets[forward.targets[e]+1]++;
+		}
+		for(int i=0; i<n; i++){
+			offsets[i+1]+=offsets[i];
+		}
+
+		targets=new int[m];
+		weights=new double[m];
+		probs=new double[m];
+		int[] next=Arrays.copyOf(offsets, n);
+		for(int u=0; u<n; u++){
+			for(int e=forward.offsets[u]; e<forward.offsets[u+1]; e++){
+				int pos=next[forward.targets[e]]++;
+				targets[pos]=u;
+				weights[pos]=forward.weights[e];
+				probs[pos]=forward.probs[e];
+			}
+		}
+
+		sortedTargets=new int[m];
+		sortedWeights=new double[m];
+		sortRows(offsets, targets, weights, sortedTargets, sortedWeights);
+	}
+
+	/**
+	 * Sort each row by target, keeping parallel edges in adjacency order so that the first one is found first
+	 */
+	private static void sortRows(int[] offsets, int[] targets, double[] weights, int[] sortedTargets, double[] sortedWeights){
+		long[] keys=new long[targets.length];
+		for(int e=0; e<keys.length; e++){
+			keys[e]=((long) targets[e]<<32)|e;
+		}
+		for(int i=0; i+1<offsets.length; i++){
+			Arrays.sort(keys, offsets[i], offsets[i+1]);
+		}
+		for(int e=0; e<keys.length; e++){
+			sortedTargets[e]=(int) (keys[e]>>>32);
+			sortedWeights[e]=weights[(int) keys[e]];
+		}
+	}
+
+	/**
+	 * @return number of vertices
+	 */
+	public int size(){
+		return vertices.size();
+	}
+
+	/**
+	 * @return number of (directed) edges stored, i.e., an undirected edge counts twice
+	 */
+	public int edgeCount(){
+		return targets.length;
+	}
+
+	public boolean isDirected(){
+		return directed;
+	}
+
+	/**
+	 * Get index of a vertex
+	 * @param vertex vertex ID
+	 * @return index of the vertex, or -1 if it is not in the graph
+	 */
+	public int indexOf(V vertex){
+		Integer i=index.get(vertex);
+		return (i==null)?-1:i;
+	}
+
+	/**
+	 * Get vertex ID of an index
+	 * @param i index
+	 * @return vertex ID
+	 */
+	public V vertexAt(int i){
+		return vertices.get(i);
+	}
+
+	public int degree(int i){
+		return offsets[i+1]-offsets[i];
+	}
+
+	/**
+	 * The row offsets. Shared with the snapshot, must not be modified.
+	 */
+	public int[] getOffsets(){
+		return offsets;
+	}
+
+	/**
+	 * The end vertex index of each edge. Shared with the snapshot, must not be modified.
+	 */
+	public int[] getTargets(){
+		return targets;
+	}
+
+	/**
+	 * The weight of each edge. Shared with the snapshot, must not be modified.
+	 */
+	public double[] getWeights(){
+		return weights;
+	}
+
+	/**
+	 * The activation probability of each edge in a social network
+	 * @param defaultProb probability of edges which have none of their own
+	 * @return new array aligned with targets
+	 */
+	public double[] getActivationProbs(double defaultProb){
+		double[] p=new double[probs.length];
+		for(int e=0; e<p.length; e++){
+			p[e]=Double.isNaN(probs[e])?defaultProb:probs[e];
+		}
+		return p;
+	}
+
+	public boolean hasCoordinates(){
+		return xs!=null;
+	}
+
+	/**
+	 * Straight-line distance between two vertices: great-circle (haversine) miles if the coordinates look like
+	 * longitude/latitude degrees, Euclidean distance in coordinate units otherwise
+	 * @param u index of one vertex
+	 * @param v index of other vertex
+	 * @return straight-line distance, 0 if the graph has no coordinates
+	 */
+	public double straightLineDistance(int u, int v){
+		if(xs==null) return 0;
+		if(geographic){
+			double sinY=Math.sin((ys[v]-ys[u])/2);
+			double sinX=Math.sin((xs[v]-xs[u])/2);
+			double a=sinY*sinY+cosYs[u]*cosYs[v]*sinX*sinX;
+			return 2*EARTH_RADIUS_MI*Math.asin(Math.sqrt(Math.min(1, a)));
+		}
+		double dx=xs[v]-xs[u], dy=ys[v]-ys[u];
+		return Math.sqrt(dx*dx+dy*dy);
+	}
+
+	/**
+	 * Factor turning straight-line distances into an A* heuristic which is admissible (and consistent) for the edge
+	 * weights, whatever their unit: the smallest ratio of edge weight to straight-line distance over all edges.
+	 * Since every edge is at least this factor times its straight-line length, so is every path, by the triangle
+	 * inequality. With len_mi weights and geographic coordinates the factor should be close to 1; a much smaller one
+	 * reveals edges shorter than their end points are apart, and only weakens the heuristic.
+	 * @return the factor, 0 if the graph has no coordinates, i.e., A* is plain Dijkstra
+	 */
+	public synchronized double getHeuristicScale(){
+		if(heuristicScale>=0) return heuristicScale;
+		double scale=(xs==null)?0:Double.POSITIVE_INFINITY;
+		for(int u=0; u<size()&&scale>0; u++){
+			for(int e=offsets[u]; e<offsets[u+1]; e++){
+				double d=straightLineDistance(u, targets[e]);
+				if(d>0) scale=Math.min(scale, weights[e]/d);
+			}
+		}
+		if(Double.isInfinite(scale)||Double.isNaN(scale)||scale<0) scale=0;
+		heuristicScale=scale*(1-1e-9); //margin for rounding, so that the bound is never above a true distance
+		return heuristicScale;
+	}
+
+	/**
+	 * Get the transpose of this graph, i.e., in-coming edges of each vertex. An undirected graph is its own transpose.
+	 * @return reverse graph sharing the vertex indices of this graph
+	 */
+	public synchronized CsrGraph<V> getReverse(){
+		if(!directed) return this;
+		if(reverse==null) reverse=new CsrGraph<V>(this);
+		return reverse;
+	}
+
+	/**
+	 * Get the shortest path engine of this snapshot, which can be shared by all threads
+	 * @return shortest path engine
+	 */
+	public synchronized ShortestPathEngine<V> getShortestPathEngine(){
+		if(engine==null) engine=new ShortestPathEngine<V>(this);
+		return engine;
+	}
+
+	/**
+	 * This method returns a list of all adjacent vertices, same as Graph.getAdjacentVertices
+	 * @param vertex the source vertex
+	 * @return an array list containing the vertices
+	 */
+	public ArrayList<V> getAdjacentVertices(V vertex){
+		int i=index.get(vertex);
+		ArrayList<V> returnList=new ArrayList<V>(degree(i));
+		for(int e=offsets[i]; e<offsets[i+1]; e++){
+			returnList.add(vertices.get(targets[e]));
+		}
+		return returnList;
+	}
+
+	/**
+	 * Weight of the first edge from source to end, same as Graph.getDistanceBetween
+	 * @return the weight, 0 if source and end are the same, infinity if there is no such edge
+	 */
+	public double getDistanceBetween(V source, V end){
+		if(source.equals(end)) return 0;
+		int t=indexOf(end);
+		if(t<0) return Double.POSITIVE_INFINITY;
+		return getDistanceBetween(index.get(source), t);
+	}
+
+	public double getDistanceBetween(int source, int end){
+		//Special case: source and target are the same
+		if(source==end) return 0;
+
+		//Binary search for the first edge to end in the sorted row
+		int lo=offsets[source], hi=offsets[source+1];
+		while(lo<hi){
+			int mid=(lo+hi)>>>1;
+			if(sortedTargets[mid]<end) lo=mid+1;
+			else hi=mid;
+		}
+		if(lo<offsets[source+1]&&sortedTargets[lo]==end) return sortedWeights[lo];
+		return Double.POSITIVE_INFINITY;
+	}
+}
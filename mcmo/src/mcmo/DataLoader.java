@@ -12,6 +12,25 @@ public class DataLoader {
 		// TODO Auto-generated constructor stub
 	}
 
+	/**
+	 * Load a social network, whose edge weights are activation probabilities
+	 * @param graph graph to add the network to
+	 * @param directed whether edges are arcs
+	 * @param edgeListFile CSV of edges: from, to, activation probability
+	 * @param nodeListFile CSV of nodes: id, x, y
+	 */
+	public static <V> void loadSocialNetwork(Graph<V> graph, boolean directed,
+			String edgeListFile, String nodeListFile) {
+		loadNetwork(graph, directed, edgeListFile, nodeListFile);
+
+		// ASSIGN activation probabilities from the weights
+		for (V v : graph.getVertexList().keySet()) {
+			for (Edge<V> e : graph.getEdges(v)) {
+				e.setActivateProb(e.getWeight());
+			}
+		}
+	}
+
 	public static void loadNetwork(Graph graph, boolean directed,
 			String edgeListFile, String nodeListFile) {
 		BufferedReader fileReader = null;
@@ -0,0 +1,23 @@
+package mcmo;
+
+/**
+ * A diffusion process over the CSR snapshot of a social network, simulated one cascade at a time by one worker
+ * thread. InfluenceModel averages the cascades of the engine picked by -Dmcmo.diffusion: IcSimulator for the
+ * independent cascade model ("ic", default) or LtSimulator for the linear threshold model ("lt").
+ * @param <V> type of vertex ID
+ */
+public interface DiffusionEngine<V> {
+	/**
+	 * @return CSR snapshot the engine was built on
+	 */
+	CsrGraph<V> getCsr();
+
+	/**
+	 * Simulate one cascade
+	 * @param seeds indices of seed nodes, distinct; negative entries (nodes not in the network) count but do not spread
+	 * @param maxStages max number of stages
+	 * @param random random number generator of the calling worker
+	 * @return influence of the cascade, including the seeds
+	 */
+	int simulate(int[] seeds, int maxStages, SplitMix64 random);
+}
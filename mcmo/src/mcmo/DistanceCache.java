@@ -0,0 +1,129 @@
+package mcmo;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A memory-bounded cache of shortest distances on a road network between a fixed universe of vertices, e.g., the
+ * houses of the social network. A row holds the distances from one source to every vertex of the universe and is
+ * filled lazily by a one-to-many query. Rows are evicted in least-recently-used order once the memory bound is hit;
+ * if all rows of the universe fit, the cache is effectively a dense distance matrix and precompute() can fill it up front.
+ * <p>
+ * Distances on the road network never change between campaigns, so the cache can outlive a single greedy run.
+ * It is safe to use from many threads.
+ * @param <V> type of vertex ID
+ */
+public class DistanceCache<V> {
+	private final CsrGraph<V> csr;
+	private final int[] universe; //CSR indices of the universe vertices
+	private final int[] slot; //CSR index -> position in universe, -1 if not in universe
+	private final int maxRows;
+	private final LinkedHashMap<Integer, double[]> rows; //source CSR index -> distances to the universe, in LRU order
+	private long hits, misses;
+
+	/**
+	 * Create a cache using at most a quarter of the maximum heap
+	 * @param route_network road network
+	 * @param nodes universe of vertices; those not on the road network are ignored
+	 */
+	public DistanceCache(Graph<V> route_network, Collection<V> nodes) {
+		this(route_network, nodes, Runtime.getRuntime().maxMemory()/4);
+	}
+
+	/**
+	 * @param route_network road network
+	 * @param nodes universe of vertices; those not on the road network are ignored
+	 * @param maxBytes memory bound of the cached rows
+	 */
+	public DistanceCache(Graph<V> route_network, Collection<V> nodes, long maxBytes) {
+		csr=route_network.getCsr();
+		slot=new int[csr.size()];
+		Arrays.fill(slot, -1);
+		int m=0;
+		int[] tmp=new int[nodes.size()];
+		for(V v: nodes){
+			int i=csr.indexOf(v);
+			if(i>=0&&slot[i]<0){
+				slot[i]=m;
+				tmp[m++]=i;
+			}
+		}
+		universe=Arrays.copyOf(tmp, m);
+		maxRows=(int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes/(8L*Math.max(1, m)+64)));
+		rows=new LinkedHashMap<Integer, double[]>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, double[]> eldest){
+				return size()>maxRows;
+			}
+		};
+	}
+
+	/**
+	 * @return the CSR snapshot of the road network this cache was built on
+	 */
+	public CsrGraph<V> getCsr(){
+		return csr;
+	}
+
+	/**
+	 * @return whether every row of the universe fits, i.e., the cache behaves as a dense matrix
+	 */
+	public boolean isDense(){
+		return maxRows>=universe.length;
+	}
+
+	/**
+	 * Shortest distance on the road network. Pairs with both ends outside the universe (or, on a directed network,
+	 * the target outside) are answered by a point-to-point query without caching. A vertex not on the road network is
+	 * reached from nowhere.
+	 * @param source source vertex
+	 * @param target target vertex
+	 * @return shortest distance, infinity if not reachable
+	 */
+	public double getDistance(V source, V target){
+		int s=csr.indexOf(source);
+		int t=csr.indexOf(target);
+		if(s<0||t<0) return Double.POSITIVE_INFINITY; //not on the road network
+		if(s==t) return 0;
+		if(slot[t]>=0) return getRow(s)[slot[t]];
+		//Distances are symmetric on an undirected network, so the row of the target will do
+		if(slot[s]>=0&&!csr.isDirected()) return getRow(t)[slot[s]];
+		return csr.getShortestPathEngine().getDistance(s, t);
+	}
+
+	/**
+	 * Fill the rows of all universe vertices, as many as the memory bound allows
+	 */
+	public void precompute(){
+		for(int i=0; i<universe.length&&i<maxRows; i++){
+			getRow(universe[i]);
+		}
+	}
+
+	private double[] getRow(int source){
+		synchronized(rows){
+			double[] row=rows.get(source);
+			if(row!=null){
+				hits++;
+				return row;
+			}
+			misses++;
+		}
+
+		//Compute outside the lock, so that other threads are not blocked by a Dijkstra run
+		double[] row=new double[universe.length];
+		csr.getShortestPathEngine().getDistances(source, universe, row);
+		synchronized(rows){
+			rows.put(source, row);
+		}
+		return row;
+	}
+
+	public String toString(){
+		synchronized(rows){
+			return "DistanceCache[universe="+universe.length+", rows="+rows.size()+"/"+maxRows+", hits="+hits+", misses="+misses+"]";
+		}
+	}
+}
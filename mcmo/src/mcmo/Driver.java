@@ -19,6 +19,7 @@ public class Driver {
 	public static int mode=0;
 	public static Random random=new Random(2016);
 	public static int max_run_infl=0;
+	public static final double PROGRESS_Z=3; //standard errors of the confidence bounds of progressive adoption estimates
 
 	public static void main(String[] args) throws Exception {
 		BUDGET=1000*Integer.valueOf(args[0]); //first parameter budget[2, 4, 6, 8, 10]				
@@ -52,12 +53,17 @@ public class Driver {
 			DataLoader.loadNetwork(roadNet, false, "edges_road.csv",
 					"nodes_road.csv");
 
+		// ROUTE through a contraction hierarchy if an index file is given (-Dmcmo.ch=<file>); it is built and saved on first run
+		String chFile=System.getProperty("mcmo.ch");
+		if (chFile != null)
+			roadNet.setContractionHierarchy(ContractionHierarchy.loadOrBuild(roadNet, chFile));
+
 		// BUILD a social network by spatial closeness
 		if (test_case)
-			DataLoader.loadNetwork(sociNet, true, "edges_soci_test.csv",
+			DataLoader.loadSocialNetwork(sociNet, true, "edges_soci_test.csv",
 					"nodes_soci_test.csv");
 		else
-			DataLoader.loadNetwork(sociNet, true, "edges_soci.csv",
+			DataLoader.loadSocialNetwork(sociNet, true, "edges_soci.csv",
 					"nodes_soci.csv");
 
 		//Verify DataLoader
@@ -256,6 +262,7 @@ public class Driver {
 			//TERMINATE when solutions are sufficiently close	
 
 		}
+		System.out.println(">>INFLUENCE_CACHE:"+channelDoorToDoor.soci_model.getCache());
 	}
 
 
@@ -281,7 +288,7 @@ public class Driver {
 		while(pos<lbs.size()){//process lbs an ubs simultaneously
 			double newCost=0.5*(lbs.get(pos).getCost()+ubs.get(pos).getCost());
 			long t0 = System.nanoTime();
-			double newProfit=(int) channel.getAdoption(newCost);	
+			double newProfit=queryAdoption(channel, newCost, lbs.get(pos).getProfit(), ubs.get(pos).getProfit());	
 			long t1 = System.nanoTime();
 			//System.out.println(newCost+","+newProfit+","+(t1-t0)/1.0e+9);
 
@@ -322,7 +329,7 @@ public class Driver {
 
 			double newCost=0.5*(lbs.get(pos).getCost()+ubs.get(pos).getCost());
 			long t0 = System.nanoTime();
-			double newProfit=(int) channel.getAdoption(newCost);	
+			double newProfit=queryAdoption(channel, newCost, lbs.get(pos).getProfit(), ubs.get(pos).getProfit());	
 			long t1 = System.nanoTime();
 			System.out.println(newCost+","+newProfit+","+(t1-t0)/1.0e+9);
 
@@ -358,7 +365,7 @@ public class Driver {
 
 			double newCost=0.5*(lbs.get(pos).getCost()+ubs.get(pos).getCost());
 			long t0 = System.nanoTime();
-			double newProfit=(int) channel.getAdoption(newCost);	
+			double newProfit=queryAdoption(channel, newCost, lbs.get(pos).getProfit(), ubs.get(pos).getProfit());	
 			long t1 = System.nanoTime();
 			//System.out.println(newCost+","+newProfit+","+(t1-t0)/1.0e+9);
 
@@ -380,6 +387,30 @@ public class Driver {
 	}
 
 
+	/**
+	 * Query the adoption of a channel at a cost, truncated to an integer as the profits of options are. A progressive
+	 * channel is refined only until the adoption is clearly the lower or the upper bound profit, i.e., both of its
+	 * confidence bounds truncate to that profit; a new threshold takes the complete estimate.
+	 * @param channel channel
+	 * @param cost query budget
+	 * @param lbProfit profit of the lower bound option
+	 * @param ubProfit profit of the upper bound option
+	 * @return adoption, truncated to an integer
+	 * @throws Exception
+	 */
+	private static double queryAdoption(Channel channel, double cost, double lbProfit, double ubProfit) throws Exception {
+		if(!(channel instanceof ProgressiveChannel)) return (int) channel.getAdoption(cost);
+
+		Estimate.Stream stream=((ProgressiveChannel) channel).getAdoptionProgress(cost);
+		Estimate e=stream.next();
+		while(!e.isComplete()&&stream.hasNext()){
+			double lo=(int) e.lower(PROGRESS_Z);
+			if(lo==(int) e.upper(PROGRESS_Z)&&(lo==lbProfit||lo==ubProfit)) return lo; //decided, stop refining
+			e=stream.next();
+		}
+		return (int) e.getMean();
+	}
+
 	private static void sendInitialQuery(ArrayList<Option> lbs, ArrayList<Option> ubs, Channel channel) throws Exception {
 		for(int b=0; b<=BUDGET;b+=BUDGET){//modified [b==0]
 			long t0 = System.nanoTime();
@@ -60,10 +60,10 @@ public class Driver_SA {
 
 		// BUILD a social network by spatial closeness
 		if (test_case)
-			DataLoader.loadNetwork(sociNet, true, "edges_soci_test.csv",
+			DataLoader.loadSocialNetwork(sociNet, true, "edges_soci_test.csv",
 					"nodes_soci_test.csv");
 		else
-			DataLoader.loadNetwork(sociNet, true, "edges_soci.csv",
+			DataLoader.loadSocialNetwork(sociNet, true, "edges_soci.csv",
 					"nodes_soci.csv");
 
 		//Verify DataLoader
@@ -181,6 +181,7 @@ public class Driver_SA {
 			tem*=alpha;
 			iter++;			
 		}
+		System.out.println(">>INFLUENCE_CACHE:"+channelDoorToDoor.soci_model.getCache());
 	}
 
 
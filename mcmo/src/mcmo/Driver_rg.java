@@ -103,7 +103,7 @@ public class Driver_rg {
 			ifnet_edges="data/RandomGraph/rg_ba_ifNet_2.csv";
 		}
 
-		DataLoader.loadNetwork(sociNet, false, ifnet_edges, ifnet_nodes);//note undirected social graph
+		DataLoader.loadSocialNetwork(sociNet, false, ifnet_edges, ifnet_nodes);//note undirected social graph
 
 		//Test Network
 		String source = SOURCE_NODE;
@@ -118,6 +118,7 @@ public class Driver_rg {
 		iniSet.add("1");
 
 		InfluenceModel <String> soci_model=new InfluenceModel <String> (sociNet);
+		GreedyWalks.attachDistanceCache(roadNet, sociNet, source);
 		//double inf=0;
 
 		//for(int i=0; i<1000; i++){
@@ -329,6 +330,7 @@ public class Driver_rg {
 				}
 			}
 		}
+		System.out.println(">>INFLUENCE_CACHE:"+soci_model.getCache());
 	}
 	//}
 	/*
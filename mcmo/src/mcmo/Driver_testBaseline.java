@@ -0,0 +1,159 @@
+package mcmo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Driver program to check the routing, influence and cover walk code against the results of the original code on
+ * the test networks (edges_road_test.csv, edges_soci_test.csv); run from the directory holding them.
+ * Prints each mismatch and exits with status 1 if there is any.
+ * @author zhangh24
+ *
+ */
+public class Driver_testBaseline {
+	private static final String[] ROAD_NODES={"S", "A", "B", "C", "D", "E", "F", "G"};
+	private static final String[] HOUSES={"A", "B", "C", "D", "E", "F", "G"};
+
+	//Shortest distances among ROAD_NODES by the original Dijkstra, Graph.dijkstraShortestPath(graph, source)
+	private static final double[][] OLD_DISTANCES={
+		{0.0, 1.0, 5.0, 4.0, 10.0, 8.0, 12.0, 13.0},
+		{1.0, 0.0, 4.0, 3.0, 9.0, 7.0, 11.0, 12.0},
+		{5.0, 4.0, 0.0, 6.0, 5.0, 7.0, 7.0, 10.0},
+		{4.0, 3.0, 6.0, 0.0, 10.0, 8.0, 12.0, 13.0},
+		{10.0, 9.0, 5.0, 10.0, 0.0, 2.0, 2.0, 5.0},
+		{8.0, 7.0, 7.0, 8.0, 2.0, 0.0, 4.0, 5.0},
+		{12.0, 11.0, 7.0, 12.0, 2.0, 4.0, 0.0, 3.0},
+		{13.0, 12.0, 10.0, 13.0, 5.0, 5.0, 3.0, 0.0},
+	};
+
+	//Cover cost from S by the original Christofides code, for each non-empty subset of HOUSES: bit i of the index
+	//minus one is set if HOUSES[i] is in the subset
+	private static final double[] OLD_TOUR_COSTS={
+		2.0, 10.0, 10.0, 8.0, 8.0, 15.0, 15.0,
+		20.0, 20.0, 20.0, 20.0, 24.0, 24.0, 24.0, 24.0,
+		16.0, 16.0, 20.0, 20.0, 20.0, 20.0, 24.0, 24.0,
+		20.0, 20.0, 20.0, 20.0, 24.0, 24.0, 24.0, 24.0,
+		24.0, 24.0, 24.0, 24.0, 28.0, 28.0, 28.0, 28.0,
+		24.0, 24.0, 24.0, 24.0, 28.0, 28.0, 28.0, 28.0,
+		24.0, 24.0, 28.0, 24.0, 28.0, 28.0, 32.0, 28.0,
+		24.0, 24.0, 28.0, 28.0, 28.0, 28.0, 32.0, 32.0,
+		26.0, 26.0, 28.0, 28.0, 30.0, 30.0, 32.0, 32.0,
+		28.0, 28.0, 28.0, 28.0, 32.0, 32.0, 32.0, 32.0,
+		26.0, 26.0, 30.0, 28.0, 30.0, 30.0, 34.0, 32.0,
+		28.0, 28.0, 30.0, 30.0, 34.0, 34.0, 36.0, 36.0,
+		28.0, 28.0, 28.0, 28.0, 32.0, 32.0, 32.0, 32.0,
+		28.0, 28.0, 28.0, 28.0, 32.0, 32.0, 32.0, 32.0,
+		28.0, 28.0, 32.0, 30.0, 32.0, 32.0, 36.0, 34.0,
+		28.0, 28.0, 32.0, 32.0, 32.0, 32.0, 36.0, 36.0,
+	};
+
+	//Seed sets whose influence is compared across the influence modes
+	private static final String[][] SEED_SETS={{"A"}, {"A", "B"}, {"C", "E"}, {"A", "D", "G"}, HOUSES};
+
+	private static int failures=0;
+
+	public static void main(String[] args) throws Exception{
+		Graph <String> roadNet=new Graph <String> (false);
+		DataLoader.loadNetwork(roadNet, false, "edges_road_test.csv", "nodes_road_test.csv");
+		Graph <String> sociNet=new Graph <String> (true);
+		DataLoader.loadSocialNetwork(sociNet, true, "edges_soci_test.csv", "nodes_soci_test.csv");
+
+		checkDistances(roadNet);
+		checkTours(roadNet);
+		checkInfluence(sociNet);
+
+		System.out.println((failures==0)?"PASS":"FAIL: "+failures+" mismatches");
+		if(failures>0) System.exit(1);
+	}
+
+	/**
+	 * Compare every routing path with the original Dijkstra distances
+	 */
+	private static void checkDistances(Graph<String> roadNet){
+		CsrGraph<String> csr=roadNet.getCsr();
+		ShortestPathEngine<String> engine=csr.getShortestPathEngine();
+		ContractionHierarchy<String> ch=new ContractionHierarchy<String>(roadNet);
+		DistanceCache<String> cache=new DistanceCache<String>(roadNet, Arrays.asList(ROAD_NODES));
+
+		for(int i=0; i<ROAD_NODES.length; i++){
+			for(int j=0; j<ROAD_NODES.length; j++){
+				String s=ROAD_NODES[i], t=ROAD_NODES[j];
+				int si=csr.indexOf(s), ti=csr.indexOf(t);
+				double expected=OLD_DISTANCES[i][j];
+				for(ShortestPathEngine.Algorithm algorithm: ShortestPathEngine.Algorithm.values()){
+					check(algorithm+" "+s+"->"+t, engine.getDistance(si, ti, algorithm), expected, 1e-9);
+				}
+				check("CH "+s+"->"+t, ch.getDistance(s, t), expected, 1e-9);
+				check("DistanceCache "+s+"->"+t, cache.getDistance(s, t), expected, 1e-9);
+			}
+		}
+		System.out.println("Distances: A*, bidirectional, CH and distance cache checked on "+ROAD_NODES.length+"x"+ROAD_NODES.length+" pairs");
+	}
+
+	/**
+	 * Compare the Christofides cover cost of every set of houses with the original one; the matching and Euler tour
+	 * may break ties differently, so a tour may be shorter than before but not longer
+	 */
+	private static void checkTours(Graph<String> roadNet){
+		int shorter=0;
+		for(int mask=1; mask<(1<<HOUSES.length); mask++){
+			HashSet<String> cover=new HashSet<String>();
+			for(int i=0; i<HOUSES.length; i++){
+				if((mask>>i&1)!=0) cover.add(HOUSES[i]);
+			}
+			WrapWalkWithLength<String> walk=Graph.shortestCoverCostChristofides("S", roadNet, cover);
+			double old=OLD_TOUR_COSTS[mask-1];
+			if(walk.length>old+1e-9){
+				failures++;
+				System.out.println("Tour "+cover+": "+walk.length+" longer than the old "+old);
+			}else if(walk.length<old-1e-9){
+				shorter++;
+			}
+			if(!isTour(walk.walk, cover)){
+				failures++;
+				System.out.println("Tour "+cover+": "+walk.walk+" does not start and end at S or misses a house");
+			}
+		}
+		System.out.println("Tours: "+((1<<HOUSES.length)-1)+" cover sets checked, "+shorter+" shorter than before");
+	}
+
+	private static boolean isTour(ArrayList<String> walk, HashSet<String> cover){
+		if(walk.isEmpty()||!walk.get(0).equals("S")||!walk.get(walk.size()-1).equals("S")) return false;
+		return walk.containsAll(cover);
+	}
+
+	/**
+	 * Compare the bits and worlds estimates of fixed seed sets with the mc ones, within four standard errors
+	 */
+	private static void checkInfluence(Graph<String> sociNet) throws Exception{
+		InfluenceModel<String> mc=model(sociNet, "mc");
+		InfluenceModel<String> bits=model(sociNet, "bits");
+		InfluenceModel<String> worlds=model(sociNet, "worlds");
+
+		for(String[] seeds: SEED_SETS){
+			HashSet<String> s=new HashSet<String>(Arrays.asList(seeds));
+			double m=mc.getExpectedInfluence(s);
+			double se=mc.getStandardError();
+			double b=bits.getExpectedInfluence(s);
+			double w=worlds.getExpectedInfluence(s);
+			int numWorlds=Integer.getInteger("mcmo.worlds", mc.getRuns()/10);
+			check("bits "+s, b, m, 4*Math.sqrt(se*se+bits.getStandardError()*bits.getStandardError()));
+			check("worlds "+s, w, m, 4*se*Math.sqrt(1+(double) mc.getRuns()/numWorlds)); //fewer worlds than runs
+			System.out.println("Influence "+s+": mc="+m+" (se "+se+"), bits="+b+", worlds="+w);
+		}
+	}
+
+	private static InfluenceModel<String> model(Graph<String> sociNet, String mode){
+		System.setProperty("mcmo.influence", mode);
+		InfluenceModel<String> model=new InfluenceModel<String>(sociNet);
+		System.clearProperty("mcmo.influence");
+		return model;
+	}
+
+	private static void check(String what, double actual, double expected, double tolerance){
+		if(Math.abs(actual-expected)<=tolerance||actual==expected) return; //equal infinities too
+		failures++;
+		System.out.println(what+": "+actual+", expected "+expected);
+	}
+}
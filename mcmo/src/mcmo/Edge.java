@@ -8,7 +8,7 @@ public class Edge<V> implements Comparable <Edge <V>>{
 	private double length;
 
 	//Social network
-	private double activate_prob; 
+	private double activate_prob=Double.NaN; //NaN if the edge has no probability of its own
 
 	public Edge(V vert, double weight2) {
 		vertex = vert;
@@ -23,6 +23,21 @@ public class Edge<V> implements Comparable <Edge <V>>{
 		covered=false;
 	}
 
+	/**
+	 * @return activation probability of the edge in a social network, NaN if it has none
+	 */
+	public double getActivateProb(){
+		return activate_prob;
+	}
+
+	/**
+	 * Set the activation probability; CSR snapshots taken before keep the old one
+	 * @param prob activation probability
+	 */
+	public void setActivateProb(double prob){
+		this.activate_prob=prob;
+	}
+
 	public boolean isCovered(){
 		return this.covered;
 	}
@@ -0,0 +1,119 @@
+package mcmo;
+
+/**
+ * A sampled estimate with its standard error, e.g., of an expected influence after some batches of runs.
+ * Immutable.
+ */
+public class Estimate {
+	private final double mean;
+	private final double standardError; //0 if exact
+	private final long runs;
+	private final boolean complete; //no further refinement will come
+
+	/**
+	 * @param mean estimate
+	 * @param standardError standard error of the estimate, 0 if exact, infinite if unknown
+	 * @param runs number of samples behind the estimate
+	 * @param complete whether this is the final estimate
+	 */
+	public Estimate(double mean, double standardError, long runs, boolean complete) {
+		this.mean=mean;
+		this.standardError=standardError;
+		this.runs=runs;
+		this.complete=complete;
+	}
+
+	/**
+	 * @param value exact value
+	 * @return complete estimate without error
+	 */
+	public static Estimate exact(double value){
+		return new Estimate(value, 0, 0, true);
+	}
+
+	public double getMean(){
+		return mean;
+	}
+
+	public double getStandardError(){
+		return standardError;
+	}
+
+	public long getRuns(){
+		return runs;
+	}
+
+	public boolean isComplete(){
+		return complete;
+	}
+
+	/**
+	 * @param z number of standard errors, e.g., 3
+	 * @return lower confidence bound
+	 */
+	public double lower(double z){
+		return mean-z*standardError;
+	}
+
+	/**
+	 * @param z number of standard errors, e.g., 3
+	 * @return upper confidence bound
+	 */
+	public double upper(double z){
+		return mean+z*standardError;
+	}
+
+	/**
+	 * Estimate of the difference of two independent estimates
+	 * @param other estimate to subtract
+	 * @return this minus other, complete when both are
+	 */
+	public Estimate minus(Estimate other){
+		double se=Math.sqrt(standardError*standardError+other.standardError*other.standardError);
+		return new Estimate(mean-other.mean, se, Math.min(runs, other.runs), complete&&other.complete);
+	}
+
+	@Override
+	public String toString(){
+		return mean+" +-"+standardError+" ("+runs+" runs"+(complete?"":", refining")+")";
+	}
+
+	/**
+	 * @param e estimate
+	 * @return stream of the estimate alone
+	 */
+	public static Stream single(final Estimate e){
+		return new Stream(){
+			private boolean done;
+
+			@Override
+			public boolean hasNext(){
+				return !done;
+			}
+
+			@Override
+			public Estimate next(){
+				done=true;
+				return e;
+			}
+		};
+	}
+
+	/**
+	 * A stream of estimates of the same quantity, each refining the last, so a caller can stop as soon as it knows
+	 * enough
+	 */
+	public interface Stream {
+		/**
+		 * @return whether a refined estimate can follow, false once a complete one was returned
+		 */
+		boolean hasNext();
+
+		/**
+		 * Refine the estimate, e.g., by one more batch of runs
+		 * @return refined estimate
+		 * @throws Exception
+		 */
+		Estimate next() throws Exception;
+	}
+}
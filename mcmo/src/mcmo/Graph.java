@@ -1,28 +1,40 @@
 package mcmo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.PriorityQueue;
-import java.util.Stack;
 public class Graph<V> {
 	private HashMap<V, ArrayList<Edge<V>>> adjacencyList;
+	private HashMap<V, HashMap<V, Double>> edgeWeights; //weight of the first edge from a vertex to each neighbor, kept up to date by add, addArc and addEdge
 	//private ArrayList<V> vertexList;
 	private LinkedHashMap<V, Vertex> vertexList; //USE LinkedHashMap to preserve the odd. [hz 2.13.2016 fix random seed issue]
 	private boolean directed;
+	private CsrGraph<V> csr; //CSR snapshot, rebuilt lazily after any change
+	private DistanceCache<V> distanceCache; //optional cache of shortest distances, dropped after any change
+	private ContractionHierarchy<V> hierarchy; //optional routing index, dropped after any change
 
 	public Graph(boolean isDirected) {
 		directed = isDirected;
 		adjacencyList = new HashMap<V, ArrayList<Edge<V>>>();
+		edgeWeights = new HashMap<V, HashMap<V, Double>>();
 		//vertexList = new ArrayList<V>();
 		vertexList = new LinkedHashMap<V, Vertex>();
 	}
 	public void add(V vertex, ArrayList<Edge<V>> connectedVertices) {
+		csr=null;
+		distanceCache=null;
+		hierarchy=null;
 		// Add the new vertex to the adjacencyList with it's list of connected nodes
 		adjacencyList.put(vertex, connectedVertices);
 		//vertexList.add(vertex);
 		vertexList.put(vertex, new Vertex (vertex,0));		
+		edgeWeights.put(vertex, new HashMap<V, Double>());
+		for (Edge<V> edge : connectedVertices) {
+			indexEdge(vertex, edge.getVertex(), edge.getWeight());
+		}
 
 		// If this is an undirected graph, every edge needs to represented
 		// twice, once in the added vertex's list and once in the list of each
@@ -37,6 +49,7 @@ public class Graph<V> {
 						new ArrayList<Edge<V>>());
 				//vertexList.add(vertexConnectedToAddedVertex.getVertex());
 				vertexList.put(vertexConnectedToAddedVertex.getVertex(), new Vertex (vertexConnectedToAddedVertex.getVertex(),0));
+				edgeWeights.put(vertexConnectedToAddedVertex.getVertex(), new HashMap<V, Double>());
 
 				correspondingConnectedList = adjacencyList
 						.get(vertexConnectedToAddedVertex.getVertex());
@@ -45,7 +58,9 @@ public class Graph<V> {
 				// The weight from one vertex back to another in an undirected
 				// graph is equal
 				double weight = vertexConnectedToAddedVertex.getWeight();
-				correspondingConnectedList.add(new Edge<V>(vertex, weight));
+				Edge<V> backEdge = new Edge<V>(vertex, weight);
+				correspondingConnectedList.add(backEdge);
+				indexEdge(vertexConnectedToAddedVertex.getVertex(), vertex, weight);
 			}
 		}
 	}
@@ -65,7 +80,12 @@ public class Graph<V> {
 			ArrayList<Edge<V>> tempList = new ArrayList<Edge<V>>();
 			add(end, tempList);
 		}
-		adjacencyList.get(source).add(new Edge<V>(end, weight));
+		csr=null;
+		distanceCache=null;
+		hierarchy=null;
+		Edge<V> edge = new Edge<V>(end, weight);
+		adjacencyList.get(source).add(edge);
+		indexEdge(source, end, weight);
 		return true;
 	}
 
@@ -86,10 +106,30 @@ public class Graph<V> {
 			add(vertexTwo, tempList);
 			return true;
 		}
-		adjacencyList.get(vertexOne).add(new Edge<V>(vertexTwo, weight));
-		adjacencyList.get(vertexTwo).add(new Edge<V>(vertexOne, weight));
+		csr=null;
+		distanceCache=null;
+		hierarchy=null;
+		Edge<V> edgeOne = new Edge<V>(vertexTwo, weight);
+		Edge<V> edgeTwo = new Edge<V>(vertexOne, weight);
+		adjacencyList.get(vertexOne).add(edgeOne);
+		adjacencyList.get(vertexTwo).add(edgeTwo);
+		indexEdge(vertexOne, vertexTwo, weight);
+		indexEdge(vertexTwo, vertexOne, weight);
 		return true;
 	}
+
+	/**
+	 * Record the weight of an edge unless the source already has an edge to the same end, so that parallel edges
+	 * resolve to the first one, as a scan of the adjacency list would
+	 */
+	private void indexEdge(V source, V end, double weight) {
+		HashMap<V, Double> row = edgeWeights.get(source);
+		if (row == null) {
+			row = new HashMap<V, Double>();
+			edgeWeights.put(source, row);
+		}
+		if (!row.containsKey(end)) row.put(end, weight);
+	}
 	/**
 	 * This method returns a list of all adjacent vertices
 	 *
@@ -107,17 +147,55 @@ public class Graph<V> {
 		//Special case: source and target are the same
 		if(source.equals(end)) return 0;
 
-		for (Edge<V> edge : adjacencyList.get(source)) {
-			//if (edge.getVertex() == end){ //WARN: This cause an error. "==" NOT apply to strings.
-			if (edge.getVertex().equals(end)){
-				return edge.getWeight();
-			}
-		}
-		return Double.POSITIVE_INFINITY;
+		//Constant time lookup instead of scanning the adjacency list
+		Double weight = edgeWeights.get(source).get(end);
+		return (weight == null) ? Double.POSITIVE_INFINITY : weight;
 	}	
 	public LinkedHashMap<V, Vertex> getVertexList() {
 		return vertexList;
 	}
+	/**
+	 * This method returns the list of out-going edges of a vertex
+	 *
+	 * @param vertex the source vertex
+	 * @return edges of the vertex, backed by the graph
+	 */
+	public ArrayList<Edge<V>> getEdges(V vertex){
+		return adjacencyList.get(vertex);
+	}
+	public boolean isDirected() {
+		return directed;
+	}
+	/**
+	 * Get a CSR snapshot of this graph, which is built on first use and rebuilt after the graph changes
+	 * @return CSR form of the graph
+	 */
+	public synchronized CsrGraph<V> getCsr() {
+		if(csr==null) csr=new CsrGraph<V>(this);
+		return csr;
+	}
+	/**
+	 * Attach a distance cache, which buildCompleteGraph then uses instead of running Dijkstra.
+	 * The cache is dropped when the graph changes.
+	 * @param cache distance cache built on this graph
+	 */
+	public synchronized void setDistanceCache(DistanceCache<V> cache) {
+		distanceCache = cache;
+	}
+	public synchronized DistanceCache<V> getDistanceCache() {
+		return distanceCache;
+	}
+	/**
+	 * Attach a contraction hierarchy, which buildCompleteGraph then uses before a distance cache or Dijkstra.
+	 * The index is dropped when the graph changes.
+	 * @param ch contraction hierarchy built on this graph, see ContractionHierarchy.isBuiltOn
+	 */
+	public synchronized void setContractionHierarchy(ContractionHierarchy<V> ch) {
+		hierarchy = ch;
+	}
+	public synchronized ContractionHierarchy<V> getContractionHierarchy() {
+		return hierarchy;
+	}
 	public String toString() {
 		String s = "";
 		//for (V vertex : vertexList) {
@@ -145,7 +223,7 @@ public class Graph<V> {
 	 * @param cover_nodes a set of vertices to be covered
 	 * @return a tour start and end with start node along with cost
 	 */
-	public static <V> WrapWalkWithLength shortestCoverCostChristofides(V start_node, Graph<V> route_network, HashSet<V> cover_nodes){
+	public static <V> WrapWalkWithLength<V> shortestCoverCostChristofides(V start_node, Graph<V> route_network, HashSet<V> cover_nodes){
 		//System.out.println("Calling Cover Cost!!!");
 		ArrayList <V> walk=new ArrayList<V> ();
 		double length=0;
@@ -157,15 +235,19 @@ public class Graph<V> {
 		//Special case: start node is the same as the node to be covered
 		if(G.vertexList.size()==0) {
 			walk.add(start_node);
-			return new WrapWalkWithLength(walk, length);
+			return new WrapWalkWithLength<V>(walk, length);
 		}
 
+		//USE the distance matrix pipeline if G is complete, which it is when built from a route network
+		CsrGraph<V> csr=G.getCsr();
+		if(isComplete(csr)) return christofidesDense(start_node, csr);
+
 		//Calculate MST T of G
 		Graph<V> T =growMST(start_node, G);		
 		//System.out.println("MST T:"+T.toString());
 		//Special case: MST not exist or some node is not reachable
 		if(T.vertexList.size()==0||T.vertexList.size()<G.vertexList.size()){
-			return new WrapWalkWithLength(walk, Double.POSITIVE_INFINITY);
+			return new WrapWalkWithLength<V>(walk, Double.POSITIVE_INFINITY);
 		}
 
 		//Calculate the set of vertices O with odd degree in T
@@ -196,11 +278,206 @@ public class Graph<V> {
 		walk=tspPath;
 		length=getWalkLength(G, tspPath); //USE G the complete graph to calculate length.
 
-		return new WrapWalkWithLength(walk, length);
+		return new WrapWalkWithLength<V>(walk, length);
 	}
 
 
 
+	/**
+	 * Christofides' algorithm on the distance matrix of a complete graph: the tree, odd-degree vertices, matching and
+	 * Euler tour are kept in int arrays instead of intermediate Graph objects. Same steps as the Graph-based path.
+	 * @param start_node start vertex
+	 * @param csr CSR snapshot of the complete graph
+	 * @return a tour start and end with start node along with cost, infinite cost if some vertex is not reachable
+	 */
+	private static <V> WrapWalkWithLength<V> christofidesDense(V start_node, CsrGraph<V> csr){
+		int n=csr.size();
+		double[][] dist=distanceMatrix(csr);
+		int s=csr.indexOf(start_node);
+
+		//Calculate MST T of G
+		int[] preNode=new int[n];
+		if(denseMST(dist, s, preNode)<n){
+			return new WrapWalkWithLength<V>(new ArrayList<V>(), Double.POSITIVE_INFINITY);
+		}
+
+		//Calculate the set of vertices O with odd degree in T
+		int[] degree=new int[n];
+		for(int v=0; v<n; v++){
+			if(preNode[v]<0) continue;
+			degree[v]++;
+			degree[preNode[v]]++;
+		}
+		int k=0;
+		int[] odd=new int[n];
+		for(int v=0; v<n; v++){
+			if(degree[v]%2==1) odd[k++]=v;
+		}
+
+		//Construct a perfect matching M on O greedily, taking pairs in increasing order of distance
+		double[] pairDist=new double[k*k];
+		for(int i=0; i<k; i++){
+			for(int j=0; j<k; j++){
+				pairDist[i*k+j]=(i==j)?Double.POSITIVE_INFINITY:dist[odd[i]][odd[j]];
+			}
+		}
+		int[] pairs=sortedIndices(pairDist);
+		boolean[] matched=new boolean[n];
+
+		//Unite T and M to form an Eulerian multigraph, as an edge list
+		int[] from=new int[n-1+k/2];
+		int[] to=new int[from.length];
+		int m=0;
+		for(int v=0; v<n; v++){
+			if(preNode[v]<0) continue;
+			from[m]=preNode[v];
+			to[m]=v;
+			m++;
+		}
+		for(int p: pairs){
+			int u=odd[p/k], v=odd[p%k];
+			if(u==v||matched[u]||matched[v]) continue;
+			matched[u]=true;
+			matched[v]=true;
+			from[m]=u;
+			to[m]=v;
+			m++;
+		}
+
+		//Calculate Euler tour, and remove repeated vertices
+		int[] eulerTour=eulerTour(n, from, to, m, s);
+		boolean[] visited=new boolean[n];
+		ArrayList <V> walk=new ArrayList<V> (n+1);
+		int[] tour=new int[n+1];
+		int len=0;
+		for(int v: eulerTour){
+			if(!visited[v]){
+				visited[v]=true;
+				tour[len++]=v;
+				walk.add(csr.vertexAt(v));
+			}
+		}
+		tour[len++]=s;
+		walk.add(start_node);
+
+		//Same as getWalkLength on G
+		double length=0;
+		if(len>2){
+			for(int i=1; i<len; i++){
+				length+=dist[tour[i]][tour[i-1]];
+			}
+		}
+		return new WrapWalkWithLength<V>(walk, length);
+	}
+
+	/**
+	 * Indices of an array in increasing order of their values, equal values in index order, by a bottom-up merge
+	 * sort of primitive ints
+	 * @param keys values
+	 * @return sorted indices
+	 */
+	static int[] sortedIndices(double[] keys){
+		int n=keys.length;
+		int[] index=new int[n];
+		for(int i=0; i<n; i++){
+			index[i]=i;
+		}
+		int[] buffer=new int[n];
+		for(int width=1; width<n; width*=2){
+			for(int lo=0; lo<n-width; lo+=2*width){
+				int mid=lo+width, hi=Math.min(lo+2*width, n);
+				int i=lo, j=mid, t=lo;
+				while(i<mid&&j<hi){
+					buffer[t++]=(Double.compare(keys[index[j]], keys[index[i]])<0)?index[j++]:index[i++]; //ties from the left
+				}
+				while(i<mid) buffer[t++]=index[i++];
+				while(j<hi) buffer[t++]=index[j++];
+				System.arraycopy(buffer, lo, index, lo, hi-lo);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Whether a graph is complete, i.e., has exactly one arc between any two distinct vertices and no self loops
+	 * @param csr CSR snapshot of the graph
+	 * @return true if complete
+	 */
+	static <V> boolean isComplete(CsrGraph<V> csr){
+		int n=csr.size();
+		if(csr.edgeCount()!=n*(n-1)) return false;
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		int[] seen=new int[n]; //seen[w]==v+1 if v has an arc to w
+		for(int v=0; v<n; v++){
+			if(csr.degree(v)!=n-1) return false;
+			for(int e=offsets[v]; e<offsets[v+1]; e++){
+				int w=targets[e];
+				if(w==v||seen[w]==v+1) return false;
+				seen[w]=v+1;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Distance matrix of a graph: weight of the first arc between two vertices, infinity if none, 0 on the diagonal
+	 * @param csr CSR snapshot of the graph
+	 * @return n x n matrix
+	 */
+	static <V> double[][] distanceMatrix(CsrGraph<V> csr){
+		int n=csr.size();
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		double[] weights=csr.getWeights();
+		double[][] dist=new double[n][n];
+		for(int v=0; v<n; v++){
+			Arrays.fill(dist[v], Double.POSITIVE_INFINITY);
+			for(int e=offsets[v+1]-1; e>=offsets[v]; e--){ //backwards, so that the first of parallel arcs is kept
+				dist[v][targets[e]]=weights[e];
+			}
+			dist[v][v]=0;
+		}
+		return dist;
+	}
+
+	/**
+	 * Prim's algorithm on a distance matrix in O(n^2), without a priority queue: each step scans for the closest
+	 * vertex not in the tree, then relaxes its row
+	 * @param dist distance matrix
+	 * @param start index of start vertex
+	 * @param preNode [out] parent of each vertex in the tree, -1 for the start and vertices not reached
+	 * @return number of vertices in the tree, less than n if some vertex is not reachable
+	 */
+	static int denseMST(double[][] dist, int start, int[] preNode){
+		int n=dist.length;
+		double[] minDist=new double[n];
+		boolean[] inTree=new boolean[n];
+		Arrays.fill(minDist, Double.POSITIVE_INFINITY);
+		Arrays.fill(preNode, -1);
+		minDist[start]=0;
+
+		int size=0;
+		while(size<n){
+			int v=-1;
+			for(int w=0; w<n; w++){
+				if(!inTree[w]&&(v<0||minDist[w]<minDist[v])) v=w;
+			}
+			if(minDist[v]==Double.POSITIVE_INFINITY) break;
+			inTree[v]=true;
+			size++;
+
+			double[] row=dist[v];
+			for(int w=0; w<n; w++){
+				if(!inTree[w]&&row[w]<minDist[w]){
+					minDist[w]=row[w];
+					preNode[w]=v;
+				}
+			}
+		}
+		return size;
+	}
+
 	public static <V> double getWalkLength(Graph <V> graph, ArrayList<V> walk){
 		double length=0;
 		if(walk.size()>2) {
@@ -228,103 +505,101 @@ public class Graph<V> {
 		return cutRoute;
 	}
 
+	/**
+	 * Find an Euler tour by Hierholzer's algorithm in O(V+E). The graph is an undirected multigraph, either undirected
+	 * or holding each edge as a pair of opposite arcs, e.g., from uniteGraphs. Edges are not marked as covered.
+	 * @param origin start and end vertex of the tour
+	 * @param graph multigraph in which every vertex has even degree
+	 * @return vertices of the tour, just the origin if it has no edges
+	 */
 	public static <V> ArrayList<V> searchEulerTour(V origin, Graph <V> graph){
-		ArrayList <V> eulerTour=new ArrayList<V> ();		
-		Stack <V> liveVertices = new Stack<V>(); //Vertices that have uncovered edges
-		HashSet <V> deadVertices = new HashSet<V>(); //Vertices that have NO uncovered edges
-		eulerTour.add(origin);
-
-		liveVertices.push(origin);
-
-		while (!liveVertices.isEmpty()) { // Each iteration finds a circular route to expand current route
-			V cv = liveVertices.pop();//start from a vertex from current route
-			//System.out.println(cv);
-
-			//Form a cycle starting and ending with cv 
-			ArrayList <V> newCycle=new ArrayList<V> ();
-			V pv=cv; //pointer			
-
-			while(hasUncoveredEdge(graph, pv)){
-				boolean backToStart=false;
-				//Check if there is uncovered edge back to cv 
-				if(!pv.equals(cv)){
-					backToStart=isEdgeFeasible(graph, pv, cv);					
-				}
-
-				if(backToStart) break;
-
-				//Check neighbors
-				for(V nv:graph.getAdjacentVertices(pv)){
-					if(!deadVertices.contains(nv)&&isEdgeFeasible(graph,pv,nv)){
-						newCycle.add(nv);						
-						//mark edge: pv-nv as covered
-						marketEdgeAsCovered(graph, pv, nv);
-						liveVertices.push(nv);
-
-						//System.out.println(graph);
-						pv=nv;
-						break;
-					}					
-				}				
-			}
-
-			if(!pv.equals(cv)) {
-				newCycle.add(cv);
-				marketEdgeAsCovered(graph, pv, cv);	
+		CsrGraph<V> csr=graph.getCsr();
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+
+		//INDEX each undirected edge once, by its arc from the lower to the higher vertex index
+		int m=0;
+		for(int u=0; u<csr.size(); u++){
+			for(int e=offsets[u]; e<offsets[u+1]; e++){
+				if(u<targets[e]) m++;
 			}
-
-			//System.out.println("New cycle:"+cv+"-"+newCycle);
-
-			if(newCycle.size()>0)
-				eulerTour.addAll(eulerTour.indexOf(cv)+1, newCycle);
-
-
-			if(!hasUncoveredEdge(graph, cv)) deadVertices.add(cv);
-			else liveVertices.push(cv);
-		}	
-
-		return eulerTour;	
-	}
-
-	public static <V> boolean hasUncoveredEdge(Graph<V> graph, V v){
-		boolean hasUcEdge=false;
-		for(Edge e:graph.adjacencyList.get(v)){
-			if(!e.isCovered()) {
-				hasUcEdge=true;
-				break;
+		}
+		int[] from=new int[m];
+		int[] to=new int[m];
+		m=0;
+		for(int u=0; u<csr.size(); u++){
+			for(int e=offsets[u]; e<offsets[u+1]; e++){
+				if(u<targets[e]){
+					from[m]=u;
+					to[m]=targets[e];
+					m++;
+				}
 			}
 		}
-		return hasUcEdge;
-	}
 
-	public static <V> boolean isEdgeFeasible(Graph <V> graph, V frm, V to){
-		boolean isEdgeFeasible=false;
-		for(Edge pve:graph.adjacencyList.get(frm)){
-			//System.out.println("pv nb:"+pve.toString());
-			if(pve.getVertex().equals(to)&&!pve.isCovered()){
-				isEdgeFeasible=true;
-				break;
-			}
+		int[] tour=eulerTour(csr.size(), from, to, m, csr.indexOf(origin));
+		ArrayList <V> eulerTour=new ArrayList<V> (tour.length);
+		for(int v: tour){
+			eulerTour.add(csr.vertexAt(v));
 		}
-		return isEdgeFeasible;
+		return eulerTour;
 	}
 
-	public static <V> void marketEdgeAsCovered(Graph <V> graph, V frm, V to){
-		//pv->nv
-		for(Edge pve:graph.adjacencyList.get(frm)){
-			if(pve.getVertex().equals(to)&&!pve.isCovered()){
-				pve.setCovered();
-				break;
-			}
+	/**
+	 * Hierholzer's algorithm on an int-indexed undirected multigraph: walk unused edges from the top of a stack
+	 * until stuck, then pop vertices onto the tour. Each vertex keeps a cursor into its incident edges, so every edge
+	 * is looked at a constant number of times.
+	 * @param n number of vertices
+	 * @param from one end of each edge
+	 * @param to other end of each edge
+	 * @param m number of edges
+	 * @param origin start and end vertex of the tour
+	 * @return vertex indices of the tour
+	 */
+	static int[] eulerTour(int n, int[] from, int[] to, int m, int origin){
+		//Incident edges of each vertex
+		int[] first=new int[n+1];
+		for(int e=0; e<m; e++){
+			first[from[e]+1]++;
+			first[to[e]+1]++;
+		}
+		for(int v=0; v<n; v++){
+			first[v+1]+=first[v];
 		}
-		//nv->pv
-		for(Edge nve:graph.adjacencyList.get(to)){
-			if(nve.getVertex().equals(frm)&&!nve.isCovered()){
-				nve.setCovered();
-				break;
+		int[] incident=new int[2*m];
+		int[] cursor=Arrays.copyOf(first, n);
+		for(int e=0; e<m; e++){
+			incident[cursor[from[e]]++]=e;
+			incident[cursor[to[e]]++]=e;
+		}
+		System.arraycopy(first, 0, cursor, 0, n);
+
+		boolean[] used=new boolean[m];
+		int[] stack=new int[m+1];
+		int[] tour=new int[m+1];
+		int top=0, len=0;
+		stack[top++]=origin;
+		while(top>0){
+			int u=stack[top-1];
+			while(cursor[u]<first[u+1]&&used[incident[cursor[u]]]) cursor[u]++;
+			if(cursor[u]<first[u+1]){
+				int e=incident[cursor[u]++];
+				used[e]=true;
+				stack[top++]=(from[e]==u)?to[e]:from[e];
 			}
-		}		
+			else{
+				tour[len++]=u;
+				top--;
+			}
+		}
 
+		//Vertices were popped in reverse order of the tour
+		for(int i=0, j=len-1; i<j; i++, j--){
+			int tmp=tour[i];
+			tour[i]=tour[j];
+			tour[j]=tmp;
+		}
+		return (len==tour.length)?tour:Arrays.copyOf(tour, len);
 	}
 
 	/**
@@ -424,49 +699,62 @@ public class Graph<V> {
 	}
 
 	/**
-	 * Construct a minimum spanning tree given start node from a graph with Prim's algorithm using priority queue
+	 * Construct a minimum spanning tree given start node from a graph with Prim's algorithm using an indexed priority queue,
+	 * or an O(n^2) scan over the distance matrix if the graph is complete
 	 * @param start_node start node
 	 * @param graph the graph
 	 * @return Graph object
 	 */
 	public static <V> Graph growMST(V start_node, Graph <V> graph){
 		Graph <V> T = new Graph<V> (false);
-		PriorityQueue<Vertex<V>> Q = new PriorityQueue<>();
-
-		//Initialization
-		for(V v: graph.getVertexList().keySet() ){//|V|
-			if(v.equals(start_node))
-				graph.getVertexList().get(v).min_dist=0;//start node
-			else
-				graph.getVertexList().get(v).min_dist=Double.POSITIVE_INFINITY;
-			graph.getVertexList().get(v).pre_node=null;	
-			Q.offer(graph.getVertexList().get(v));//log|V|
-		}		
+		CsrGraph<V> csr=graph.getCsr();
+		if(isComplete(csr)){
+			double[][] dist=distanceMatrix(csr);
+			int[] preNode=new int[csr.size()];
+			denseMST(dist, csr.indexOf(start_node), preNode);
+			for(int v=0; v<preNode.length; v++){
+				if(preNode[v]>=0) T.addEdge(csr.vertexAt(preNode[v]), csr.vertexAt(v), dist[preNode[v]][v]);
+			}
+			return T;
+		}
+
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		double[] weights=csr.getWeights();
+
+		//Initialization: vertices enter the queue lazily once they are adjacent to the tree
+		int n=csr.size();
+		double[] minDist=new double[n];
+		int[] preNode=new int[n];
+		boolean[] inTree=new boolean[n];
+		Arrays.fill(minDist, Double.POSITIVE_INFINITY);
+		Arrays.fill(preNode, -1);
+		IndexedMinHeap Q=new IndexedMinHeap(n);
+		int s=csr.indexOf(start_node);
+		minDist[s]=0;
+		Q.insert(s, 0);
 
 		//Main procedure
 		while(!Q.isEmpty()){//|V|
-			Vertex <V> vtx=Q.poll(); //|log|V||
-			V v=vtx.getID();
+			int v=Q.poll(); //log|V|
+			inTree[v]=true;
 			//System.out.println("Q.poll:"+v);
 
-			if(vtx.pre_node!=null){
-				V u=vtx.pre_node;
-				T.addEdge(u, v, graph.getDistanceBetween(u, v));
+			if(preNode[v]>=0){
+				V u=csr.vertexAt(preNode[v]);
+				T.addEdge(u, csr.vertexAt(v), minDist[v]);
 			}
-			
-			for (V w : graph.getAdjacentVertices(vtx.getID())){//|2E| 
-				Vertex wVtx=graph.getVertexList().get(w);
-				if(Q.contains(wVtx)){
-					double distVandW=graph.getDistanceBetween(v, w);
-					//System.out.println(v+"-"+w+":"+distVandW);
-					if(distVandW<wVtx.min_dist){
-						wVtx.min_dist=distVandW;
-						wVtx.pre_node=v;
-						//[MUST] Remove and add w, o.w., elements in Q won't be in order
-						Q.remove(wVtx);	//log|V|
-						Q.add(wVtx);	//log|V|					
-					}						
-				}						
+
+			for (int e=offsets[v]; e<offsets[v+1]; e++){//|2E| 
+				int w=targets[e];
+				if(inTree[w]) continue;
+				double distVandW=weights[e];
+				//System.out.println(v+"-"+w+":"+distVandW);
+				if(distVandW<minDist[w]){
+					minDist[w]=distVandW;
+					preNode[w]=v;
+					Q.insertOrDecrease(w, distVandW);	//log|V|
+				}
 			}		
 		}	
 
@@ -485,71 +773,87 @@ public class Graph<V> {
 
 		HashSet <V> nodeSet=new HashSet <V> (cover_nodes);
 		nodeSet.add(start_node);	
-		for(V v: nodeSet){
+
+		//SERVE distances from the contraction hierarchy if one is attached, by a single many-to-many query
+		ContractionHierarchy<V> ch=route_network.getContractionHierarchy();
+		if(ch!=null){
+			ArrayList<V> nodes=new ArrayList<V>(nodeSet);
+			double[][] dist=ch.getDistances(nodes, nodes);
+			for(int i=0; i<nodes.size(); i++){
+				for(int j=0; j<nodes.size(); j++){
+					if(j==i) continue;
+					G.addArc(nodes.get(i), nodes.get(j), dist[i][j]);
+				}
+			}
+			return G;
+		}
+
+		//SERVE distances from the cache if one is attached
+		DistanceCache<V> cache=route_network.getDistanceCache();
+		if(cache!=null){
+			for(V v: nodeSet){
+				for(V w: nodeSet){
+					if(w.equals(v)) continue;
+					G.addArc(v, w, cache.getDistance(v, w));
+				}
+			}
+			return G;
+		}
+
+		//RUN a one-to-many query from each node, which stops once all other nodes are settled
+		CsrGraph<V> csr=route_network.getCsr();
+		ShortestPathEngine<V> engine=csr.getShortestPathEngine();
+		ArrayList<V> nodes=new ArrayList<V>(nodeSet);
+		int[] targets=new int[nodes.size()];
+		for(int i=0; i<targets.length; i++){
+			targets[i]=csr.indexOf(nodes.get(i));
+		}
+		double[] dist=new double[targets.length];
+		for(int i=0; i<targets.length; i++){
+			V v=nodes.get(i);
 			//System.out.println(v);
-			WrappedObject <V> shortestPaths=dijkstraShortestPath(route_network, v);			
-			for(V w: nodeSet){
-				//System.out.println(w);
-				if(w.equals(v)) continue;
-				G.addArc(v, w, shortestPaths.dist.get(w));
+			engine.getDistances(targets[i], targets, dist);
+			for(int j=0; j<targets.length; j++){
+				if(j==i) continue;
+				G.addArc(v, nodes.get(j), dist[j]);
 			}
 		}		
 		return G;
 	}
 
 	/**
-	 * Single source Dijkstra algorithm
+	 * Single source Dijkstra algorithm, returning maps for convenience; hot paths should use ShortestPathEngine directly
 	 * @param graph graph
 	 * @param source source vertex
 	 * @return list of shortest distance and previous node
 	 */
 	public static <V> WrappedObject <V> dijkstraShortestPath (Graph<V> graph,V source) {
 		/*System.out.println("Shortest Path:"+source+"->ALL");*/
+		CsrGraph<V> csr=graph.getCsr();
+		double[] minDist=new double[csr.size()];
+		int[] preNode=new int[csr.size()];
+		csr.getShortestPathEngine().getDistances(csr.indexOf(source), minDist, preNode);
+
 		HashMap<V, Double> dist = new HashMap<V, Double>(); //distance to all vertices
 		HashMap<V, V> prev = new HashMap<V, V>(); //predecessor list
-		PriorityQueue<Vertex<V>> Q = new PriorityQueue<>();
-		graph.getVertexList().get(source).min_dist=0;
-		dist.put(source, 0.0);
-		graph.getVertexList().get(source).pre_node=null;
-		prev.put(source, null);
-
-		//Initialization
-		for (V v: graph.getVertexList().keySet()){
-			if (!v.equals(source)) {
-				graph.getVertexList().get(v).min_dist=Double.POSITIVE_INFINITY;
-				dist.put(v, Double.POSITIVE_INFINITY);				
-
-				//prev.put(v, null);
-				graph.getVertexList().get(v).pre_node=null;
-				prev.put(v, null);
-
-			}
-			Q.offer(graph.getVertexList().get(v));			
-		}	
-
-		//Main Procedure
-		while (!Q.isEmpty()){
-			Vertex <V> u=Q.poll();
-
-			for (V v : graph.getAdjacentVertices((V) u.getID())){
-				//double alt = dist.get(u) + graph.getDistanceBetween(u, v);
-				double alt = u.min_dist + graph.getDistanceBetween((V) u.getID(), v);
-				if (alt<graph.getVertexList().get(v).min_dist){
-					Q.remove(graph.getVertexList().get(v));	
-
-					graph.getVertexList().get(v).min_dist=alt;
-					dist.put(v, alt);											
-
-					graph.getVertexList().get(v).pre_node=u.getID();
-					prev.put(v, (V) u.getID());
-
-					Q.add(graph.getVertexList().get(v));					
-				}				
-			}
+		for(int i=0; i<csr.size(); i++){
+			dist.put(csr.vertexAt(i), minDist[i]);
+			prev.put(csr.vertexAt(i), (preNode[i]<0)?null:csr.vertexAt(preNode[i]));
 		}
 
 		/*System.out.println("Dist:"+dist);*/
-		return new WrappedObject(dist, prev);
+		return new WrappedObject<V>(dist, prev);
+	}
+
+	/**
+	 * Single source Dijkstra algorithm over primitive arrays, see ShortestPathEngine
+	 * @param csr graph in CSR form
+	 * @param source index of source vertex
+	 * @param dist [out] shortest distance to each vertex, infinity if not reachable
+	 * @param prev [out] index of previous vertex on the shortest path, -1 for the source and unreachable vertices
+	 */
+	public static <V> void dijkstraShortestPath (CsrGraph<V> csr, int source, double[] dist, int[] prev) {
+		csr.getShortestPathEngine().getDistances(source, dist, prev);
 	}
 
 	//	public static <V> WrapWalkWithLength <V> shortestCoverCostGreedy(V start_node, Graph<V> graph, HashSet<V> cover_nodes){
@@ -684,13 +988,26 @@ public class Graph<V> {
 	
 	
 	/**
-	 * This method implements Dijkstra algorithm with source and target node
+	 * This method computes the shortest path between source and target node, by A* if the graph has coordinates
+	 * and by Dijkstra algorithm otherwise
 	 * @param graph graph
 	 * @param source source node
 	 * @param target target node
 	 * @return the shortest path
 	 */
 	public static <V> WrapWalkWithLength dijkstraShortestPath (Graph<V> graph,V source, V target) {
+		return shortestPath(graph, source, target, ShortestPathEngine.Algorithm.A_STAR);
+	}
+
+	/**
+	 * This method computes the shortest path between source and target node with a chosen algorithm
+	 * @param graph graph
+	 * @param source source node
+	 * @param target target node
+	 * @param algorithm algorithm variant of the routing module
+	 * @return the shortest path
+	 */
+	public static <V> WrapWalkWithLength<V> shortestPath (Graph<V> graph,V source, V target, ShortestPathEngine.Algorithm algorithm) {
 		//System.out.println("Shortest Path:"+source+"->"+target);
 		ArrayList <V> shortest_path= new ArrayList <V> ();
 
@@ -698,68 +1015,19 @@ public class Graph<V> {
 		if(source.equals(target)) {
 			shortest_path.add(0, target);
 			shortest_path.add(0, source);
-			return new WrapWalkWithLength(shortest_path, 0);				
+			return new WrapWalkWithLength<V>(shortest_path, 0);				
 		}
 
+		CsrGraph<V> csr=graph.getCsr();
+		double length=csr.getShortestPathEngine().getShortestPath(csr.indexOf(source), csr.indexOf(target), shortest_path, algorithm);
 
-		//HashMap<V, Double> dist = new HashMap<V, Double>(); //distance to all vertices
-		HashMap<V, V> prev = new HashMap<V, V>(); //predecessor list
-
-		PriorityQueue<Vertex<V>> Q = new PriorityQueue<>();
-
-
-		graph.getVertexList().get(source).min_dist=0;		
-		graph.getVertexList().get(source).pre_node=null;
-		prev.put(source, null);
-
-		//Initialization
-		for (V v: graph.getVertexList().keySet()){
-			if (!v.equals(source)) {
-				//dist.put(v, Double.POSITIVE_INFINITY);
-				graph.getVertexList().get(v).min_dist=Double.POSITIVE_INFINITY;
-
-				//prev.put(v, null);
-				graph.getVertexList().get(v).pre_node=null;
-				prev.put(v, null);
-
-			}
-			Q.offer(graph.getVertexList().get(v));			
-		}	
-
-		//Main Procedure
-		while (!Q.isEmpty()){
-			Vertex u=Q.poll();
-
-			//Terminate if currently-considered vertex is the target
-			if(u.getID().equals(target)) break;
-
-
-			for (V v : graph.getAdjacentVertices((V) u.getID())){
-				//double alt = dist.get(u) + graph.getDistanceBetween(u, v);
-				double alt = u.min_dist + graph.getDistanceBetween((V) u.getID(), v);
-				if (alt<graph.getVertexList().get(v).min_dist){
-					Q.remove(graph.getVertexList().get(v));					
-					graph.getVertexList().get(v).min_dist=alt;					
-					graph.getVertexList().get(v).pre_node=u.getID();
-					prev.put(v, (V) u.getID());
-
-					Q.add(graph.getVertexList().get(v));					
-				}				
-			}
+		//Special case: target not reachable
+		if(shortest_path.isEmpty()){
+			shortest_path.add(target);
+			length=0;
 		}
 
-		//RETRIVE path and distance
-		V u=target;
-		shortest_path.add(0, u);
-		double length=0;
-
-		while(graph.getVertexList().get(u).pre_node!=null){
-			shortest_path.add(0, (V) graph.getVertexList().get(u).pre_node); //Add to the head of the list
-			length+=graph.getDistanceBetween((V) graph.getVertexList().get(u).pre_node, u);
-			u=(V) graph.getVertexList().get(u).pre_node;			
-		}	
-
-		WrapWalkWithLength res=new WrapWalkWithLength(shortest_path, length);
+		WrapWalkWithLength<V> res=new WrapWalkWithLength<V>(shortest_path, length);
 		return res;
 	}
-}
\ No newline at end of file
+}
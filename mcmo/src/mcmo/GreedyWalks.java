@@ -0,0 +1,153 @@
+package mcmo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Steps shared by the greedy walks of Algorithm4 and Algorithm5: cover walks of a node set, scoring of candidates,
+ * and tracking the chosen walk in the channel that asked for it
+ */
+final class GreedyWalks {
+	static final boolean USE_CHRISTOFIDES=true;
+	static final boolean DISTANCE_CACHE=Boolean.getBoolean("mcmo.distance.cache"); //serve cover costs from a distance cache among houses: [-Dmcmo.distance.cache=true]
+	static final int IMM_CANDIDATES=Integer.getInteger("mcmo.imm.candidates", 0); //only the top IMM-ranked nodes are candidates: [-Dmcmo.imm.candidates, default 0 = all]
+
+	private GreedyWalks() {
+	}
+
+	/**
+	 * Attach a distance cache among the houses and the start to the road network, if enabled and none is attached yet.
+	 * The cache lasts until the road network changes, so the caller attaches it once for all the walks it plans.
+	 * @param road_network routing network incorporating houses and way points
+	 * @param social_network social network, whose nodes are the houses
+	 * @param start start vertex of the walks
+	 */
+	static <V> void attachDistanceCache(Graph<V> road_network, Graph<V> social_network, V start){
+		if(!DISTANCE_CACHE||road_network.getDistanceCache()!=null) return;
+		HashSet<V> houses=new HashSet<V>(social_network.getVertexList().keySet());
+		houses.add(start);
+		road_network.setDistanceCache(new DistanceCache<V>(road_network, houses));
+		System.out.println(">>DISTANCE_CACHE:"+road_network.getDistanceCache());
+	}
+
+	/**
+	 * Refuse influence modes whose estimates are not the successful activations the simulation counts, which the
+	 * walks' influence and the adoption built on it are measured in
+	 * @throws IllegalStateException in ris or imm mode, whose RR sets can only count activated nodes
+	 */
+	static <V> void requireActivationCounts(InfluenceModel<V> social_network){
+		if(social_network.usesRis()){
+			throw new IllegalStateException("Greedy walks need estimates of successful activations, which RR sets cannot give; "
+					+"use mcmo.influence=mc, bits or worlds");
+		}
+	}
+
+	/**
+	 * Keep only the IMM_CANDIDATES top nodes of the IMM seed ranking as candidates, if set, so that large social
+	 * networks need not be scored node by node. The ranking only picks the candidates; their influence is estimated
+	 * as usual.
+	 * @param social_network social diffusion network
+	 * @param unvisited_set candidates, pruned in place
+	 */
+	static <V> void keepRanked(InfluenceModel<V> social_network, HashSet<V> unvisited_set) throws Exception{
+		if(IMM_CANDIDATES<=0) return;
+		unvisited_set.retainAll(new HashSet<V>(social_network.getSeedRanking(IMM_CANDIDATES)));
+	}
+
+	/**
+	 * Evaluate all candidates concurrently on the shared WorkerPool: the walk covering the visited set plus each one
+	 * and, unless it is over budget in prune mode, their influence
+	 * @return candidates in the iteration order of unvisited_set
+	 */
+	static <V> ArrayList<Candidate<V>> evaluateCandidates(final int mode, final Graph<V> road_network, final InfluenceModel<V> social_network,
+			final V start, final double budget, final HashSet <V> iniActiveNodes, final HashSet<V> visited_set, HashSet<V> unvisited_set) throws Exception {
+		ArrayList<Callable<Candidate<V>>> tasks=new ArrayList<Callable<Candidate<V>>>();
+		int rank=0;
+		for(V v:unvisited_set){
+			final Candidate<V> c=new Candidate<V>(v, rank++);
+			tasks.add(new Callable<Candidate<V>>(){
+				@Override
+				public Candidate<V> call() throws Exception{
+					WrapWalkWithLength<V> walk_new=coverWalk(mode, start, road_network, union(c.node, visited_set), iniActiveNodes);
+					c.cost=walk_new.length;
+					c.walk=walk_new.walk;
+					boolean infeasible=(ChannelDoorToDoor.prune_mode||Driver_rg.prune_mode)&&c.cost>budget;
+					c.influence=infeasible?Double.NaN:social_network.getExpectedInfluence(visited_set, c.node);
+					return c;
+				}
+			});
+		}
+
+		ArrayList<Candidate<V>> candidates=new ArrayList<Candidate<V>>();
+		for(Future<Candidate<V>> result: WorkerPool.get().invokeAll(tasks)){
+			candidates.add(result.get());
+		}
+		return candidates;
+	}
+
+	/**
+	 * Walk covering a set of nodes, with the visit cost of the nodes not initially active added to its length
+	 */
+	static <V> WrapWalkWithLength<V> coverWalk(int mode, V start, Graph<V> road_network, HashSet<V> nodes, HashSet<V> iniActiveNodes) throws Exception{
+		HashSet<V> visits=exclude(nodes, iniActiveNodes);
+		WrapWalkWithLength<V> walk;
+		if(USE_CHRISTOFIDES)
+			walk=Graph.shortestCoverCostChristofides(start,road_network,visits);//[aij]
+		else
+			walk=Graph.shortestCoverCostGreedy(start,road_network,visits);//[aaai16]
+		if(mode==1) walk.length+=ChannelDoorToDoor.visit_cost*visits.size();
+		else if(mode==2) walk.length+=Driver_rg.visit_cost*visits.size();
+		return walk;
+	}
+
+	/**
+	 * Track the budget usage and visited set of the walk so far
+	 */
+	static <V> void trackVisit(int mode, double cost, HashSet<V> visited_set, HashSet<V> iniActiveNodes){
+		if(mode==1){
+			//Driver.max_influe+=delta_f_max; //Track influence changes
+			ChannelDoorToDoor.budget=cost;//Track budget usage
+			ChannelDoorToDoor.visit_set=exclude(visited_set, iniActiveNodes);
+		}else if(mode==2){
+			//Driver_rg.max_influe+=delta_f_max; //Track influence changes
+			Driver_rg.budget=cost;//Track budget usage
+			Driver_rg.visit_set=exclude(visited_set, iniActiveNodes);
+		}
+	}
+
+	/**
+	 * Track the influence of the walk over the initially active nodes
+	 */
+	static <V> void trackInfluence(int mode, InfluenceModel<V> social_network, HashSet<V> visited_set, HashSet<V> iniActiveNodes) throws Exception{
+		//Adjusted Influence[jair]
+		double influAdj=(visited_set.size()==iniActiveNodes.size())?0:
+			social_network.getExpectedInfluence(visited_set)-social_network.getExpectedInfluence(iniActiveNodes);
+
+		if(mode==1) ChannelDoorToDoor.max_influe=influAdj;
+		else if(mode==2){
+			Driver_rg.max_influe=influAdj;
+		}
+	}
+
+	static <V> HashSet<V> union(V new_node, HashSet <V> active_nodes){
+		HashSet <V> union=new HashSet <V> (active_nodes);
+		union.add(new_node);
+		return union;
+	}
+
+	static <V> HashSet<V> union( HashSet <V> node_set_1, HashSet <V> node_set_2){
+		HashSet <V> union=new HashSet <V> (node_set_1);
+		union.addAll(node_set_2);
+		return union;
+	}
+
+	static <V> HashSet<V> exclude( HashSet <V> node_set_1, HashSet <V> node_set_2){
+		HashSet <V> exclude=new HashSet <V> ();
+		for(V v: node_set_1){
+			if(!node_set_2.contains(v)) exclude.add(v);
+		}
+		return exclude;
+	}
+}
@@ -0,0 +1,122 @@
+package mcmo;
+
+import java.util.Arrays;
+
+/**
+ * Independent cascade (IC) runs over the CSR snapshot of a social network, for one worker thread.
+ * <p>
+ * Vertex states live in epoch-stamped int arrays and the frontiers in two reusable buffers, so a run allocates
+ * nothing and clearing the state between runs is O(1). Edge probabilities are kept as int thresholds aligned with
+ * the CSR targets, so a try is one random int compared to its edge's threshold. The cascade follows InfluenceModel's v3c model: in each stage
+ * every newly active node tries once to activate each out-neighbor that was neither active nor newly active before
+ * this stage, and every successful try counts toward the influence (so a node activated by two parents in the same
+ * stage counts twice, as it always has). A run stops as soon as a stage activates nobody.
+ * @param <V> type of vertex ID
+ */
+public class IcSimulator<V> implements DiffusionEngine<V> {
+	private final CsrGraph<V> csr;
+	private final int[] thresholds; //a try on edge e succeeds iff a uniform 31-bit draw is at most thresholds[e]
+	private final int[] reached; //reached[v]==epoch if v is active in this stage or was before
+	private final int[] queued; //queued[v]==tick if v is already in the next frontier
+	private int[] frontier, next;
+	private int epoch, tick;
+
+	/**
+	 * @param csr CSR snapshot of the social network
+	 * @param probs activation probability of each edge, aligned with the CSR targets
+	 */
+	public IcSimulator(CsrGraph<V> csr, double[] probs) {
+		this.csr=csr;
+		this.thresholds=new int[probs.length];
+		for(int e=0; e<probs.length; e++){
+			thresholds[e]=threshold(probs[e]);
+		}
+		int n=csr.size();
+		reached=new int[n];
+		queued=new int[n];
+		frontier=new int[n];
+		next=new int[n];
+	}
+
+	@Override
+	public CsrGraph<V> getCsr(){
+		return csr;
+	}
+
+	/**
+	 * Simulate one cascade
+	 * @param seeds indices of seed nodes, distinct; negative entries (nodes not in the network) count but do not spread
+	 * @param maxStages max number of stages
+	 * @param random random number generator of the calling worker
+	 * @return influence, i.e., number of seeds plus successful activations
+	 */
+	@Override
+	public int simulate(int[] seeds, int maxStages, SplitMix64 random){
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		nextEpoch();
+
+		int influence=seeds.length;
+		int size=0;
+		for(int s: seeds){
+			if(s<0) continue;
+			reached[s]=epoch;
+			frontier[size++]=s;
+		}
+
+		for (int t=0; t<maxStages&&size>0; t++){	//Each step, newly active nodes infect uninfected neighbors stochastically
+			nextTick();
+			int nextSize=0;
+			for(int i=0; i<size; i++){
+				int v=frontier[i];
+				for(int e=offsets[v]; e<offsets[v+1]; e++){
+					int nb=targets[e];
+					if(reached[nb]==epoch) continue;
+					if((random.nextInt()>>>1)<=thresholds[e]){
+						influence++;
+						if(queued[nb]!=tick){
+							queued[nb]=tick;
+							next[nextSize++]=nb;
+						}
+					}
+				}
+			}
+
+			//Newly infected nodes become the active ones
+			for(int i=0; i<nextSize; i++){
+				reached[next[i]]=epoch;
+			}
+			int[] tmp=frontier;
+			frontier=next;
+			next=tmp;
+			size=nextSize;
+		}
+		return influence;
+	}
+
+	/**
+	 * Threshold of a probability p: ceil(p*2^31)-1, so that a uniform 31-bit draw is at most it with probability p
+	 * (up to 2^-31)
+	 */
+	static int threshold(double p){
+		if(p<=0) return -1;
+		if(p>=1) return Integer.MAX_VALUE;
+		return (int) Math.ceil(p*0x1p31)-1;
+	}
+
+	private void nextEpoch(){
+		epoch++;
+		if(epoch==Integer.MAX_VALUE){ //wrap around
+			Arrays.fill(reached, 0);
+			epoch=1;
+		}
+	}
+
+	private void nextTick(){
+		tick++;
+		if(tick==Integer.MAX_VALUE){ //wrap around
+			Arrays.fill(queued, 0);
+			tick=1;
+		}
+	}
+}
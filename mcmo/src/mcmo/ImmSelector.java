@@ -0,0 +1,123 @@
+package mcmo;
+
+/**
+ * Influence maximization via martingales (IMM, Tang, Shi and Xiao, SIGMOD 2015) on RR sets, see RisIndex.
+ * <p>
+ * The sampling phase guesses a lower bound on the best influence of k seeds by halving n until the greedy seeds of
+ * enough RR sets reach the guess, then draws as many RR sets as the bound calls for. Greedy maximum coverage on these
+ * sets gives k seeds whose expected influence is at least (1-1/e-epsilon) of the best with probability at least
+ * 1-1/n^ell. The number of sets grows with n log n / epsilon^2 over the best influence, so networks of millions of
+ * nodes are fine.
+ * <p>
+ * The seeds come in greedy order, as a ranking for the routing-aware walks, and the index of the final RR sets is an
+ * influence oracle for any seed set.
+ * @param <V> type of vertex ID
+ */
+public class ImmSelector<V> {
+	private final int k;
+	private final double epsilon;
+	private final double lowerBound; //lower bound on the best influence of k seeds, from the sampling phase
+	private final RisIndex<V> index;
+	private final int[] seeds; //greedy seeds, in pick order
+
+	/**
+	 * Draw RR sets and select seeds
+	 * @param csr CSR snapshot of the social network
+	 * @param reverseProbs activation probability of each edge, aligned with the targets of the reverse CSR
+	 * @param maxStages max number of stages, i.e., hops from the root of an RR set
+	 * @param k number of seeds
+	 * @param epsilon approximation error, e.g., 0.1; smaller needs more RR sets
+	 * @param ell confidence exponent: the guarantee holds with probability 1-1/n^ell, e.g., 1
+	 * @param seed random seed
+	 * @throws Exception
+	 */
+	public ImmSelector(CsrGraph<V> csr, double[] reverseProbs, int maxStages, int k, double epsilon, double ell, long seed) throws Exception {
+		if(epsilon<=0||epsilon>=1) throw new IllegalArgumentException("epsilon must be in (0, 1)");
+		int n=csr.size();
+		k=Math.max(1, Math.min(k, n));
+		this.k=k;
+		this.epsilon=epsilon;
+		RisIndex.Sampling<V> sampling=new RisIndex.Sampling<V>(csr, reverseProbs, maxStages, seed);
+		if(n<2){ //nothing to choose from
+			lowerBound=n;
+			index=sampling.index();
+			seeds=index.greedySeeds(k);
+			return;
+		}
+
+		double logN=Math.log(n);
+		double l=ell*(1+Math.log(2)/logN); //the two phases each fail with probability 1/(2n^ell)
+		double logBinom=logBinomial(n, k);
+
+		//SAMPLING phase: halve a guess x of the best influence until greedy seeds of lambda'/x sets reach it
+		double e1=Math.sqrt(2)*epsilon;
+		double lambda1=(2+2*e1/3)*(logBinom+l*logN+Math.log(Math.log(n)/Math.log(2)))*n/(e1*e1);
+		double lb=1;
+		for(int i=1; i<Math.log(n)/Math.log(2); i++){
+			double x=n/Math.pow(2, i);
+			sampling.extend(sets(lambda1/x));
+			RisIndex<V> r=sampling.index();
+			double influence=r.estimate(r.greedySeeds(k));
+			if(influence>=(1+e1)*x){
+				lb=influence/(1+e1);
+				break;
+			}
+		}
+		lowerBound=lb;
+
+		//DRAW enough sets for the bound, and select on them
+		double alpha=Math.sqrt(l*logN+Math.log(2));
+		double beta=Math.sqrt((1-1/Math.E)*(logBinom+l*logN+Math.log(2)));
+		double lambdaStar=2*n*Math.pow((1-1/Math.E)*alpha+beta, 2)/(epsilon*epsilon);
+		sampling.extend(sets(lambdaStar/lb));
+		index=sampling.index();
+		seeds=index.greedySeeds(k);
+	}
+
+	/**
+	 * Number of RR sets for a real-valued target, capped at the largest array
+	 */
+	private static int sets(double theta){
+		return (int) Math.min(Integer.MAX_VALUE-8, Math.ceil(theta));
+	}
+
+	/**
+	 * @return log of n choose k
+	 */
+	static double logBinomial(int n, int k){
+		double s=0;
+		for(int i=0; i<k; i++){
+			s+=Math.log((double) (n-i)/(i+1));
+		}
+		return s;
+	}
+
+	public int getK(){
+		return k;
+	}
+
+	public double getEpsilon(){
+		return epsilon;
+	}
+
+	/**
+	 * @return lower bound on the best influence of k seeds found by the sampling phase
+	 */
+	public double getLowerBound(){
+		return lowerBound;
+	}
+
+	/**
+	 * @return index of the RR sets the seeds were selected on, an influence oracle
+	 */
+	public RisIndex<V> getIndex(){
+		return index;
+	}
+
+	/**
+	 * @return indices of the seeds in greedy order, i.e., ranked by marginal gain
+	 */
+	public int[] getSeeds(){
+		return seeds.clone();
+	}
+}
@@ -0,0 +1,150 @@
+package mcmo;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int indices 0..capacity-1 with double keys. Unlike java.util.PriorityQueue, it tracks
+ * the position of every index, so contains is O(1) and decreaseKey is O(log n), which is what Dijkstra and Prim need.
+ */
+public class IndexedMinHeap {
+	private final int[] heap; //heap[k] = index stored at heap position k
+	private final int[] pos; //pos[i] = heap position of index i, -1 if not in the heap
+	private final double[] keys; //keys[i] = key of index i
+	private int size;
+
+	public IndexedMinHeap(int capacity) {
+		heap=new int[capacity];
+		pos=new int[capacity];
+		keys=new double[capacity];
+		Arrays.fill(pos, -1);
+		size=0;
+	}
+
+	public int capacity(){
+		return heap.length;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size==0;
+	}
+
+	public boolean contains(int i){
+		return pos[i]>=0;
+	}
+
+	/**
+	 * Get key of an index in the heap
+	 * @param i index
+	 * @return its key
+	 */
+	public double keyOf(int i){
+		return keys[i];
+	}
+
+	/**
+	 * Insert an index which is not in the heap yet
+	 * @param i index
+	 * @param key key
+	 */
+	public void insert(int i, double key){
+		keys[i]=key;
+		heap[size]=i;
+		pos[i]=size;
+		size++;
+		siftUp(pos[i]);
+	}
+
+	/**
+	 * Lower the key of an index already in the heap; a larger key is ignored
+	 * @param i index
+	 * @param key new key
+	 */
+	public void decreaseKey(int i, double key){
+		if(key>=keys[i]) return;
+		keys[i]=key;
+		siftUp(pos[i]);
+	}
+
+	/**
+	 * Insert an index, or lower its key if it is already in the heap
+	 * @param i index
+	 * @param key key
+	 */
+	public void insertOrDecrease(int i, double key){
+		if(pos[i]<0) insert(i, key);
+		else decreaseKey(i, key);
+	}
+
+	/**
+	 * @return index with minimum key, which stays in the heap
+	 */
+	public int peek(){
+		return heap[0];
+	}
+
+	/**
+	 * Remove and return the index with minimum key
+	 * @return index with minimum key
+	 */
+	public int poll(){
+		int min=heap[0];
+		size--;
+		pos[min]=-1;
+		if(size>0){
+			heap[0]=heap[size];
+			pos[heap[0]]=0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	/**
+	 * Remove all indices. Takes O(size), so a heap can be reused across runs cheaply.
+	 */
+	public void clear(){
+		for(int k=0; k<size; k++){
+			pos[heap[k]]=-1;
+		}
+		size=0;
+	}
+
+	private void siftUp(int k){
+		int i=heap[k];
+		double key=keys[i];
+		while(k>0){
+			int parent=(k-1)>>>1;
+			int p=heap[parent];
+			if(keys[p]<=key) break;
+			heap[k]=p;
+			pos[p]=k;
+			k=parent;
+		}
+		heap[k]=i;
+		pos[i]=k;
+	}
+
+	private void siftDown(int k){
+		int i=heap[k];
+		double key=keys[i];
+		int half=size>>>1;
+		while(k<half){
+			int child=2*k+1;
+			int c=heap[child];
+			int right=child+1;
+			if(right<size&&keys[heap[right]]<keys[c]){
+				child=right;
+				c=heap[child];
+			}
+			if(key<=keys[c]) break;
+			heap[k]=c;
+			pos[c]=k;
+			k=child;
+		}
+		heap[k]=i;
+		pos[i]=k;
+	}
+}
@@ -0,0 +1,122 @@
+package mcmo;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of influence estimates keyed by seed set, evicting the least recently used entry when full.
+ * A seed set is keyed by the sorted indices of its nodes in the social network, so sets with the same nodes share
+ * an entry however they were built. Entries belong to one snapshot of the network and are dropped when it changes.
+ * Thread-safe.
+ */
+public class InfluenceCache {
+	private final int capacity;
+	private final LinkedHashMap<Key, double[]> entries;
+	private Object snapshot; //network snapshot the entries belong to
+	private long hits, misses;
+
+	/**
+	 * @param capacity max number of entries, 0 to cache nothing
+	 */
+	public InfluenceCache(final int capacity) {
+		this.capacity=capacity;
+		this.entries=new LinkedHashMap<Key, double[]>(16, 0.75f, true){
+			private static final long serialVersionUID=1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest){
+				return size()>capacity;
+			}
+		};
+	}
+
+	/**
+	 * Look up a seed set
+	 * @param snapshot network snapshot the indices refer to; a new one drops all entries
+	 * @param seeds sorted indices of seed nodes, -1 for each node not in the network
+	 * @return cached entry, or null if none
+	 */
+	public synchronized double[] get(Object snapshot, int[] seeds){
+		if(capacity==0) return null;
+		setSnapshot(snapshot);
+		double[] value=entries.get(new Key(seeds));
+		if(value==null) misses++;
+		else hits++;
+		return value;
+	}
+
+	/**
+	 * Store an entry for a seed set
+	 * @param snapshot network snapshot the indices refer to; a new one drops all entries
+	 * @param seeds sorted indices of seed nodes, -1 for each node not in the network; not to be changed afterwards
+	 * @param value estimate and its error bar
+	 */
+	public synchronized void put(Object snapshot, int[] seeds, double[] value){
+		if(capacity==0) return;
+		setSnapshot(snapshot);
+		entries.put(new Key(seeds), value);
+	}
+
+	private void setSnapshot(Object snapshot){
+		if(this.snapshot!=snapshot){
+			entries.clear();
+			this.snapshot=snapshot;
+		}
+	}
+
+	public synchronized void clear(){
+		entries.clear();
+	}
+
+	public synchronized int size(){
+		return entries.size();
+	}
+
+	public synchronized long getHits(){
+		return hits;
+	}
+
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+	@Override
+	public synchronized String toString(){
+		return "entries="+entries.size()+", hits="+hits+", misses="+misses;
+	}
+
+	/**
+	 * Sorted copy of seed indices, as a key
+	 * @param seeds indices of seed nodes
+	 * @return sorted copy
+	 */
+	public static int[] key(int[] seeds){
+		int[] key=Arrays.copyOf(seeds, seeds.length);
+		Arrays.sort(key);
+		return key;
+	}
+
+	/**
+	 * Sorted seed indices with their hash computed once
+	 */
+	private static class Key {
+		private final int[] seeds;
+		private final int hash;
+
+		Key(int[] seeds){
+			this.seeds=seeds;
+			this.hash=Arrays.hashCode(seeds);
+		}
+
+		@Override
+		public int hashCode(){
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o){
+			return (o instanceof Key)&&((Key) o).hash==hash&&Arrays.equals(((Key) o).seeds, seeds);
+		}
+	}
+}
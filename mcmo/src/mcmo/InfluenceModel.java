@@ -3,12 +3,10 @@ package mcmo;
 import static java.util.Arrays.asList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import mcmo.Driver_testConcurrent.Sum;
@@ -16,11 +14,45 @@ import mcmo.Driver_testConcurrent.Sum;
 public class InfluenceModel<V> {
 
 	Graph<V> socialNetwork; //Underlying social network structure
-	private final int MAX_STAGES=13; //max number of stages, higher and larger variance of expected influence, 1stage=1day
+	private final int MAX_STAGES; //max number of stages, higher and larger variance of expected influence, 1stage=1day: [-Dmcmo.max.stages, default 13]
 	private int MAX_RUNS; //max number of sample model runs, higher and smaller variance of expected influence: [10000]
-	private final double ACT_PROB=0.1; //activation probability [default=0.2]
+	private final double ACT_PROB; //activation probability: [-Dmcmo.act.prob, default 0.1]
+	private final boolean EDGE_PROBS; //use the probabilities of the edges, if loaded, with ACT_PROB for the rest: [-Dmcmo.edge.probs=true]
+	private double[] probs, reverseProbs; //activation probability of each edge of probsCsr and of its reverse
+	private CsrGraph<V> probsCsr;
+	private double[] ltWeights; //weight of each edge of ltWeightsCsr in LT mode
+	private CsrGraph<V> ltWeightsCsr;
+	//Runs per task, fixed so that the tasks and their random streams do not depend on the pool size; a multiple of 64
+	//for bits mode, and large enough that a task costs more than its scheduling
+	private static final int RUNS_PER_TASK=256;
 	//private Random random = new Random(2016); //set random seed to replicate result
-	public static int seed_public=2000;
+	public static int seed_public=2000; //base seed of all random streams
+	private final ThreadLocal<DiffusionEngine<V>> simulators=new ThreadLocal<DiffusionEngine<V>>(); //per worker, reused across runs
+	private final ThreadLocal<BitIcSimulator<V>> bitSimulators=new ThreadLocal<BitIcSimulator<V>>(); //per worker, in bits mode
+
+	//Diffusion model [-Dmcmo.diffusion]: "ic" independent cascade (default), "lt" linear threshold, simulated only
+	private final String DIFFUSION;
+
+	//Influence mode [-Dmcmo.influence]: "mc" simulates every estimate (default), "bits" simulates 64 runs per word,
+	//"ris" estimates from RR sets drawn once, "imm" from as many RR sets as IMM needs, "worlds" from live-edge worlds drawn once.
+	//All but the RR sets count successful activations, as v3c did: see countsActivations
+	private final String MODE;
+	private int RIS_SETS; //number of RR sets: [-Dmcmo.ris.sets, default 10*MAX_RUNS]
+	private RisIndex<V> ris; //built on first use
+	private int IMM_K; //seeds the IMM sample is sized for in imm mode: [-Dmcmo.imm.k, default 50]
+	private double IMM_EPSILON; //approximation error of IMM: [-Dmcmo.imm.epsilon, default 0.1]
+	private ImmSelector<V> imm; //last IMM selection
+	private RisIndex<V>.Coverage coverage; //RR sets hit by the last base set of getExpectedInfluence(base, v)
+	private int WORLDS; //number of live-edge worlds, simulating instead if they take over half the heap: [-Dmcmo.worlds, default MAX_RUNS/10]
+	private LiveEdgeWorlds<V> worlds; //built on first use
+
+	//Adaptive run count in simulation modes: batches until the standard error is within [-Dmcmo.adaptive.se, default 0 = off]
+	private double ADAPTIVE_SE;
+	private int ADAPTIVE_BATCH; //runs per batch, also of progressive estimates, in whole tasks: [-Dmcmo.adaptive.batch, default 1024]
+	private final double ADAPTIVE_Z=3; //a candidate is clearly dominated if its estimate plus Z standard errors is below the bar
+	private final ThreadLocal<double[]> errorBars=new ThreadLocal<double[]>(); //standard error, runs and completeness of the last estimate
+
+	private final InfluenceCache cache; //estimates by seed set: [-Dmcmo.influence.cache entries, default 100000, 0 = off]
 	//NOTE: 10 is never enough/robust
 	//AAAI2016:100
 	//jair: 1000 [compare]
@@ -29,9 +61,46 @@ public class InfluenceModel<V> {
 
 	public InfluenceModel(Graph <V> graph) {
 		MAX_RUNS=20000;
+		MAX_STAGES=Integer.getInteger("mcmo.max.stages", 13);
+		ACT_PROB=Double.parseDouble(System.getProperty("mcmo.act.prob", "0.1"));
+		DIFFUSION=System.getProperty("mcmo.diffusion", "ic").trim().toLowerCase();
+		String mode=System.getProperty("mcmo.influence", "mc").trim().toLowerCase();
+		if(DIFFUSION.equals("lt")&&!mode.equals("mc")){ //RR sets and live-edge worlds are those of IC
+			System.out.println("mcmo.influence="+mode+" is for IC only, simulating LT");
+			mode="mc";
+		}
+		else if(!DIFFUSION.equals("ic")&&!DIFFUSION.equals("lt")) System.out.println("Unknown mcmo.diffusion="+DIFFUSION+", using IC");
+		WORLDS=Integer.getInteger("mcmo.worlds", MAX_RUNS/10);
+		if(mode.equals("worlds")){ //the worlds keep a distance per node each, so they must fit in the heap with room to spare
+			CsrGraph<V> csr=graph.getCsr();
+			long bytes=LiveEdgeWorlds.memoryBytes(csr.size(), csr.edgeCount(), WORLDS);
+			if(bytes>Runtime.getRuntime().maxMemory()/2){
+				System.out.println(WORLDS+" live-edge worlds take "+(bytes>>20)+" MB, over half the heap, simulating");
+				mode="mc";
+			}
+		}
+		MODE=mode;
+		EDGE_PROBS=Boolean.getBoolean("mcmo.edge.probs");
+		RIS_SETS=Integer.getInteger("mcmo.ris.sets", 10*MAX_RUNS);
+		IMM_K=Integer.getInteger("mcmo.imm.k", 50);
+		IMM_EPSILON=Double.parseDouble(System.getProperty("mcmo.imm.epsilon", "0.1"));
+		ADAPTIVE_SE=Double.parseDouble(System.getProperty("mcmo.adaptive.se", "0"));
+		ADAPTIVE_BATCH=Math.max(1, Integer.getInteger("mcmo.adaptive.batch", 1024));
+		ADAPTIVE_BATCH=(ADAPTIVE_BATCH+RUNS_PER_TASK-1)/RUNS_PER_TASK*RUNS_PER_TASK; //rounded up, so batches end where tasks do
+		cache=new InfluenceCache(Math.max(0, Integer.getInteger("mcmo.influence.cache", 100000)));
 
 		System.out.println(">>MAX_RUNS:"+MAX_RUNS);
-		System.out.println(">>ACT_PROB:"+ACT_PROB);
+		System.out.println(">>MAX_STAGES:"+MAX_STAGES);
+		if(DIFFUSION.equals("lt")) System.out.println(">>DIFFUSION:LT, weights "+(EDGE_PROBS?"of the edges, 1/in-degree for the rest":"1/in-degree"));
+		else System.out.println(">>ACT_PROB:"+ACT_PROB+(EDGE_PROBS?" for edges without their own":""));
+		if(MODE.equals("ris")) System.out.println(">>RIS_SETS:"+RIS_SETS);
+		else if(MODE.equals("imm")) System.out.println(">>IMM: k="+IMM_K+", epsilon="+IMM_EPSILON);
+		else if(MODE.equals("worlds")) System.out.println(">>WORLDS:"+WORLDS);
+		else if(!MODE.equals("mc")&&!MODE.equals("bits")) System.out.println("Unknown mcmo.influence="+MODE+", simulating");
+		if(ADAPTIVE_SE>0) System.out.println(">>ADAPTIVE_SE:"+ADAPTIVE_SE+" per batch of "+ADAPTIVE_BATCH);
+		if(countsActivations()) System.out.println(">>COUNTING:successful activations, a node activated by k parents in one stage counts k times");
+		else if(DIFFUSION.equals("lt")) System.out.println(">>COUNTING:activated nodes, each once, as in LT each activates once");
+		else System.out.println(">>COUNTING:activated nodes, each once; not comparable with the other modes, and refused by the greedy walks");
 
 		socialNetwork=graph;
 
@@ -255,7 +324,7 @@ public class InfluenceModel<V> {
 	//	}
 
 	/**
-	 * A multi-threading implementation to compute expected influence
+	 * A multi-threading implementation to compute expected influence, splitting the runs into chunks on the shared WorkerPool
 	 * @param active_nodes
 	 * @return
 	 * @throws Exception
@@ -264,77 +333,482 @@ public class InfluenceModel<V> {
 		//MAX_RUNS=Driver.max_run_infl;//[TEST] varying runs test
 		//System.out.println(MAX_RUNS);
 
-		double expectedInfluence=0;
-		int numThreads=4;//adjust with reference to local CPU cores [local: 4; server: 16/16]
-		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-		ArrayList taskList=new ArrayList();
-		int nt=4; //number of tasks
+		int[] seeds=toIndices(active_nodes);
+		CsrGraph<V> csr=socialNetwork.getCsr();
+		int[] key=InfluenceCache.key(seeds);
+		double[] cached=lookup(csr, key);
+		if(cached!=null) return cached[0];
+
+		double expectedInfluence;
+		if(usesRis()) expectedInfluence=getRisIndex().estimate(seeds);
+		else if(MODE.equals("worlds")) expectedInfluence=getWorlds().estimate(seeds);
+		else expectedInfluence=simulate(seeds, Double.NEGATIVE_INFINITY);
+		remember(csr, key, expectedInfluence);
+		return expectedInfluence;
+	}
+
+	/**
+	 * Look up a seed set in the cache, restoring the error bar of its estimate
+	 */
+	private double[] lookup(CsrGraph<V> csr, int[] key){
+		double[] cached=cache.get(csr, key);
+		if(cached!=null&&isSimulated()) errorBars.set(new double[]{cached[1], cached[2], 1});
+		return cached;
+	}
+
+	/**
+	 * Cache the estimate of a seed set, unless the simulation stopped early below a threshold
+	 */
+	private void remember(CsrGraph<V> csr, int[] key, double expectedInfluence){
+		if(!isSimulated()){
+			cache.put(csr, key, new double[]{expectedInfluence, Double.NaN, 0});
+			return;
+		}
+		double[] e=errorBars.get();
+		if(e[2]==0) return; //a bound, not an estimate
+		cache.put(csr, key, new double[]{expectedInfluence, e[0], e[1]});
+	}
+
+	private boolean isSimulated(){
+		return !usesRis()&&!MODE.equals("worlds");
+	}
+
+	/**
+	 * @return whether estimates count successful activations (IC simulation and live-edge worlds, as v3c did), rather
+	 * than activated nodes (RR sets, and LT, where the two are the same as every node activates once)
+	 */
+	private boolean countsActivations(){
+		return !usesRis()&&!DIFFUSION.equals("lt");
+	}
+
+	/**
+	 * @return whether estimates come from RR sets, in ris or imm mode
+	 */
+	boolean usesRis(){
+		return MODE.equals("ris")||MODE.equals("imm");
+	}
+
+	/**
+	 * @return cache of estimates by seed set, with its hit and miss counts
+	 */
+	public InfluenceCache getCache(){
+		return cache;
+	}
+
+	/**
+	 * Simulate the expected influence of a seed set. Runs MAX_RUNS runs, or with a tolerance set, batches of runs until
+	 * the standard error is within the tolerance, MAX_RUNS is reached, or the estimate is clearly below a threshold.
+	 * @param seeds indices of seed nodes
+	 * @param threshold estimates clearly below it may stop early; Double.NEGATIVE_INFINITY for none
+	 * @return expected influence
+	 * @throws Exception
+	 */
+	private double simulate(int[] seeds, double threshold) throws Exception{
+		seeds=InfluenceCache.key(seeds); //the cascades depend on the order of the seeds
+		long fingerprint=SplitMix64.fingerprint(seeds);
+		long total=0;
+		RunningStats stats=new RunningStats();
+		boolean complete=true; //false if stopped below the threshold
+		int runs=0;
+		int batch=(ADAPTIVE_SE>0)?Math.min(ADAPTIVE_BATCH, MAX_RUNS):MAX_RUNS;
+
+		while(runs<MAX_RUNS){
+			int size=Math.min(batch, MAX_RUNS-runs);
+			total+=runBatch(seeds, fingerprint, runs, size, stats);
+			runs+=size;
+
+			if(ADAPTIVE_SE<=0) break;
+			double se=stats.standardError();
+			if(se<=ADAPTIVE_SE) break; //precise enough
+			if(stats.mean()+ADAPTIVE_Z*se<threshold){ //clearly dominated
+				complete=false;
+				break;
+			}
+		}
+
+		errorBars.set(new double[]{stats.standardError(), runs, complete?1:0});
+		return (double) total/runs;	
+	}
 
-		for(int i=0; i<nt; i++){
-			taskList.add(new Sum(active_nodes, MAX_RUNS/nt));
+	/**
+	 * Simulate a batch of runs of a seed set on the shared WorkerPool. Run r is always in the task of the runs from
+	 * r-r%RUNS_PER_TASK, so the runs do not depend on how an estimate is split into batches.
+	 * @param seeds sorted indices of seed nodes
+	 * @param fingerprint fingerprint of the seeds
+	 * @param first index of the first run of the batch among the runs of the estimate, a multiple of RUNS_PER_TASK
+	 * @param size number of runs, a multiple of RUNS_PER_TASK unless the batch ends at MAX_RUNS
+	 * @param stats stats of the runs so far, to add those of the batch to
+	 * @return total influence of the runs
+	 * @throws Exception
+	 */
+	private long runBatch(int[] seeds, long fingerprint, int first, int size, RunningStats stats) throws Exception{
+		ArrayList <Sum> taskList=new ArrayList <Sum>();
+		for(int r=first; r<first+size; r+=RUNS_PER_TASK){ //a task draws the stream (seed set, its first run)
+			taskList.add(new Sum(seeds, Math.min(RUNS_PER_TASK, first+size-r), SplitMix64.stream(seed_public, fingerprint, r)));
 		}		
 
-		List <Future<Double>> results = executor.invokeAll(taskList);
-		executor.shutdown();
+		List <Future<Long>> results = WorkerPool.get().invokeAll(taskList);
 
-		for (Future<Double> result : results) {
-			expectedInfluence+=result.get();
+		long total=0;
+		for (Future<Long> result : results) {
+			total+=result.get(); //exact, so the sum does not depend on the order the tasks finish
 		}		
+		for (Sum task : taskList) {
+			stats.merge(task.stats);
+		}
+		return total;
+	}
+
+	/**
+	 * Estimate the expected influence of a seed set progressively: each step of the stream simulates one more batch
+	 * of ADAPTIVE_BATCH runs and gives the estimate so far with its standard error, up to MAX_RUNS runs or, with a
+	 * tolerance set, until the standard error is within it. The runs and the complete estimate are those of
+	 * getExpectedInfluence. A caller which only compares the estimate to known values may stop as soon as the
+	 * confidence bounds decide it. A cached estimate, and an estimate of the ris, imm or worlds modes, comes complete
+	 * in one step.
+	 * @param active_nodes seed set
+	 * @return stream of estimates; the complete one is cached
+	 * @throws Exception
+	 */
+	public Estimate.Stream getProgressiveInfluence(HashSet <V> active_nodes) throws Exception{
+		final CsrGraph<V> csr=socialNetwork.getCsr();
+		if(!isSimulated()) return Estimate.single(Estimate.exact(getExpectedInfluence(active_nodes))); //looks up the cache itself
+		final int[] seeds=InfluenceCache.key(toIndices(active_nodes));
+		double[] cached=lookup(csr, seeds);
+		if(cached!=null) return Estimate.single(new Estimate(cached[0], cached[1], (long) cached[2], true));
 
-		return expectedInfluence/this.MAX_RUNS;	
+		final long fingerprint=SplitMix64.fingerprint(seeds);
+		return new Estimate.Stream(){
+			private final RunningStats stats=new RunningStats();
+			private long total;
+			private int runs;
+			private boolean complete;
+
+			@Override
+			public boolean hasNext(){
+				return !complete;
+			}
+
+			@Override
+			public Estimate next() throws Exception{
+				if(!complete){
+					int size=Math.min(ADAPTIVE_BATCH, MAX_RUNS-runs);
+					total+=runBatch(seeds, fingerprint, runs, size, stats);
+					runs+=size;
+					complete=runs>=MAX_RUNS||(ADAPTIVE_SE>0&&stats.standardError()<=ADAPTIVE_SE); //where simulate stops
+				}
+				double mean=(double) total/runs;
+				errorBars.set(new double[]{stats.standardError(), runs, complete?1:0});
+				if(complete) remember(csr, seeds, mean);
+				return new Estimate(mean, stats.standardError(), runs, complete);
+			}
+		};
 	}
 
-	public class Sum implements Callable<Double> {
-		private final HashSet activeNodes;
+	/**
+	 * @return standard error of the last simulated estimate of the calling thread, NaN if none
+	 */
+	public double getStandardError(){
+		double[] e=errorBars.get();
+		return (e==null)?Double.NaN:e[0];
+	}
+
+	/**
+	 * @return number of runs of the last simulated estimate of the calling thread, 0 if none
+	 */
+	public int getRuns(){
+		double[] e=errorBars.get();
+		return (e==null)?0:(int) e[1];
+	}
+
+	/**
+	 * Compute expected influence of a base set plus one node, e.g., the visited set of a greedy walk plus a candidate.
+	 * In RIS mode the RR sets hit by the base set are kept, and updated as nodes join it, so only the sets of the
+	 * new node are counted. In worlds mode the hop distances from the base set are kept per world, so only the nodes
+	 * the new node reaches sooner are searched.
+	 * @param base base set
+	 * @param new_node node to add
+	 * @return expected influence of the union
+	 * @throws Exception
+	 */
+	public double getExpectedInfluence(HashSet <V> base, V new_node) throws Exception{
+		return getExpectedInfluence(base, new_node, Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Compute expected influence of a base set plus one node, for a candidate which only matters if its influence
+	 * reaches a threshold, e.g., that of the best candidate so far. With an adaptive tolerance, the simulation stops as
+	 * soon as the estimate is clearly below the threshold; the marginal gain over the base set has the same standard
+	 * error, as the influence of the base set is known to the caller.
+	 * @param base base set
+	 * @param new_node node to add
+	 * @param threshold influence the candidate has to reach; Double.NEGATIVE_INFINITY to estimate in full
+	 * @return expected influence of the union, below the threshold if stopped early
+	 * @throws Exception
+	 */
+	public double getExpectedInfluence(HashSet <V> base, V new_node, double threshold) throws Exception{
+		CsrGraph<V> csr=socialNetwork.getCsr();
+		int[] seeds=toIndices(base);
+		if(!base.contains(new_node)){
+			seeds=Arrays.copyOf(seeds, seeds.length+1);
+			seeds[seeds.length-1]=csr.indexOf(new_node);
+		}
+		int[] key=InfluenceCache.key(seeds);
+		double[] cached=lookup(csr, key);
+		if(cached!=null) return cached[0];
+
+		double expectedInfluence=estimateWith(base, new_node, threshold);
+		remember(csr, key, expectedInfluence);
+		return expectedInfluence;
+	}
+
+	/**
+	 * Compute expected influence of a base set plus one node, without the cache
+	 */
+	private double estimateWith(HashSet <V> base, V new_node, double threshold) throws Exception{
+		boolean ris=usesRis();
+		if(!ris&&!MODE.equals("worlds")){ //simulate
+			HashSet <V> union=new HashSet <V> (base);
+			union.add(new_node);
+			return simulate(toIndices(union), threshold);
+		}
+
+		CsrGraph<V> csr=socialNetwork.getCsr();
+		int outside=0; //nodes not in the network count one each
+		for(V v: base){
+			if(csr.indexOf(v)<0) outside++;
+		}
+		int v=csr.indexOf(new_node);
+		if(v<0){ //the new node only counts itself
+			int self=base.contains(new_node)?0:1;
+			if(ris) return getCoverage(base).getInfluence()+outside+self;
+			return getWorlds().estimate(toIndices(base))+self;
+		}
+		if(ris) return getCoverage(base).getInfluenceWith(v)+outside;
+
+		int[] inside=new int[base.size()-outside]; //base nodes in the network
+		int k=0;
+		for(V u: base){
+			int i=csr.indexOf(u);
+			if(i>=0) inside[k++]=i;
+		}
+		return getWorlds().estimateWith(inside, v)+outside;
+	}
+
+	/**
+	 * Get the RR sets hit by a set, extending the last one if the set only has new nodes, as the visited set of a greedy walk
+	 */
+	private synchronized RisIndex<V>.Coverage getCoverage(HashSet <V> nodes) throws Exception{
+		RisIndex<V> index=getRisIndex();
+		CsrGraph<V> csr=index.getCsr();
+		RisIndex<V>.Coverage c=(coverage==null)?index.emptyCoverage():coverage;
+
+		//Nodes of the set missing from the last coverage
+		int inNetwork=0;
+		ArrayList<Integer> missing=new ArrayList<Integer>();
+		for(V v: nodes){
+			int i=csr.indexOf(v);
+			if(i<0) continue;
+			inNetwork++;
+			if(!c.contains(i)) missing.add(i);
+		}
+		if(c.size()!=inNetwork-missing.size()){ //the last set has nodes this one does not, start over
+			c=index.emptyCoverage();
+			missing.clear();
+			for(V v: nodes){
+				int i=csr.indexOf(v);
+				if(i>=0) missing.add(i);
+			}
+		}
+		if(!missing.isEmpty()){
+			int[] add=new int[missing.size()];
+			for(int k=0; k<add.length; k++){
+				add[k]=missing.get(k);
+			}
+			c=c.addAll(add);
+		}
+		coverage=c;
+		return c;
+	}
+
+	/**
+	 * Get the RR sets of the current snapshot of the social network, drawing them on first use: RIS_SETS of them, or
+	 * in imm mode those of the IMM selection of IMM_K seeds
+	 */
+	private synchronized RisIndex<V> getRisIndex() throws Exception{
+		CsrGraph<V> csr=socialNetwork.getCsr();
+		if(ris==null||ris.getCsr()!=csr){
+			getEdgeProbs(csr);
+			if(MODE.equals("imm")) ris=getImm(IMM_K).getIndex();
+			else ris=new RisIndex<V>(csr, reverseProbs, MAX_STAGES, RIS_SETS, seed_public);
+			coverage=null;
+		}
+		return ris;
+	}
+
+	/**
+	 * Rank the nodes of the social network by IMM: k seeds with expected influence within 1-1/e-IMM_EPSILON of the
+	 * best k, with high probability, in greedy order. The greedy walks take them as candidates with -Dmcmo.imm.candidates.
+	 * @param k number of seeds
+	 * @return seeds in greedy order, i.e., by marginal gain; fewer than k if the network is smaller
+	 * @throws Exception
+	 */
+	public ArrayList<V> getSeedRanking(int k) throws Exception{
+		ImmSelector<V> selector=getImm(k);
+		CsrGraph<V> csr=selector.getIndex().getCsr();
+		ArrayList<V> ranking=new ArrayList<V>();
+		for(int i: selector.getSeeds()){
+			ranking.add(csr.vertexAt(i));
+		}
+		return ranking;
+	}
+
+	/**
+	 * Get the IMM selection of k seeds on the current snapshot of the social network, keeping the last one
+	 */
+	private synchronized ImmSelector<V> getImm(int k) throws Exception{
+		CsrGraph<V> csr=socialNetwork.getCsr();
+		int size=Math.max(1, Math.min(k, csr.size()));
+		if(imm==null||imm.getIndex().getCsr()!=csr||imm.getK()!=size){
+			getEdgeProbs(csr);
+			imm=new ImmSelector<V>(csr, reverseProbs, MAX_STAGES, k, IMM_EPSILON, 1, seed_public);
+		}
+		return imm;
+	}
+
+	/**
+	 * Get the live-edge worlds of the current snapshot of the social network, drawing them on first use
+	 */
+	private synchronized LiveEdgeWorlds<V> getWorlds() throws Exception{
+		CsrGraph<V> csr=socialNetwork.getCsr();
+		if(worlds==null||worlds.getCsr()!=csr){
+			worlds=new LiveEdgeWorlds<V>(csr, getEdgeProbs(csr), MAX_STAGES, WORLDS, seed_public);
+		}
+		return worlds;
+	}
+
+	public class Sum implements Callable<Long> {
+		private final int[] seeds;
 		private final int maxRun;
-		private final Random random;//each use own random
-		Sum(HashSet as, int mr) {
-			this.activeNodes = as;
+		private final SplitMix64 random;//each use own random
+		final RunningStats stats=new RunningStats(); //per run, or per batch of 64 runs in bits mode
+		Sum(int[] seeds, int mr, SplitMix64 random) {
+			this.seeds = seeds;
 			this.maxRun = mr;
 			//this.random=new Random(System.nanoTime());
-			seed_public++;
-			this.random=new Random(seed_public);
+			this.random=random;
 		}
 
 		@Override
-		public Double call() {
+		public Long call() {
 			//System.out.println(Thread.currentThread().getId());
-			Double acc = 0.0;            
+			long acc = 0;
+			if(MODE.equals("bits")){ //64 runs per batch, the last one partial
+				BitIcSimulator<V> simulator=getBitSimulator();
+				for (int r=0; r<this.maxRun; r+=BitIcSimulator.LANES){
+					int lanes=Math.min(BitIcSimulator.LANES, this.maxRun-r);
+					long mask=(lanes==BitIcSimulator.LANES)?-1L:(1L<<lanes)-1;
+					long x=simulator.simulate(seeds, MAX_STAGES, mask, random);
+					stats.add((double) x/lanes);
+					acc+=x;
+				}
+				return acc;
+			}
+			DiffusionEngine<V> simulator=getSimulator();
 			for (int r=0; r<this.maxRun; r++){
-				acc+=this.getInfluence_v3c(activeNodes);            	
+				int x=simulator.simulate(seeds, MAX_STAGES, random);
+				stats.add(x);
+				acc+=x;
 			}           
 			return acc;
 		}
-
-		private Integer getInfluence_v3c(HashSet ans) {			
-			int influence=ans.size();
-			HashSet <V> activeNodes=new HashSet (ans);//active nodes
-			HashSet <V> removedNodes=new HashSet(); //nodes no longer active
-
-			for (int t=0; t<MAX_STAGES; t++){	//Each step, newly active nodes infect uninfected neighbors stochastically
-				HashSet <V> newInfected=new HashSet();//newly infected nodes			
-				for(V v: activeNodes){
-					ArrayList <V> nbs= socialNetwork.getAdjacentVertices(v);//Neighbors
-					for (V nb: nbs){ //for each neighboring vertex
-						//that is not infected
-						if(!(activeNodes.contains(nb)||removedNodes.contains(nb))){
-							double ran=this.random.nextDouble();
-							//System.out.println(this+":"+ran+":"+t);
-							if(ran<=ACT_PROB){
-								influence++; 
-								newInfected.add(nb);
-							}	
-						}								
-					}				
-				}
-				removedNodes.addAll(activeNodes);
-				activeNodes.clear();
-				activeNodes.addAll(newInfected);
-			}			
-			return influence;				
-		}                
 	}		
 
+	/**
+	 * Get the activation probability of each edge of a snapshot of the social network: ACT_PROB, or with EDGE_PROBS
+	 * the edge's own if it has one. The probabilities of the reverse edges are kept as well.
+	 * @param csr CSR snapshot
+	 * @return probabilities aligned with the CSR targets
+	 */
+	private synchronized double[] getEdgeProbs(CsrGraph<V> csr){
+		if(probsCsr!=csr){
+			if(EDGE_PROBS){
+				probs=csr.getActivationProbs(ACT_PROB);
+				reverseProbs=csr.getReverse().getActivationProbs(ACT_PROB);
+			}else{
+				probs=new double[csr.edgeCount()];
+				Arrays.fill(probs, ACT_PROB);
+				reverseProbs=probs; //the same for every edge
+			}
+			probsCsr=csr;
+		}
+		return probs;
+	}
+
+	/**
+	 * Get the LT weight of each edge of a snapshot of the social network: with EDGE_PROBS the edge's own probability
+	 * if it has one, see LtSimulator.weights
+	 * @param csr CSR snapshot
+	 * @return weights aligned with the CSR targets
+	 */
+	private synchronized double[] getLtWeights(CsrGraph<V> csr){
+		if(ltWeightsCsr!=csr){
+			double[] own;
+			if(EDGE_PROBS) own=csr.getActivationProbs(Double.NaN);
+			else{
+				own=new double[csr.edgeCount()];
+				Arrays.fill(own, Double.NaN);
+			}
+			ltWeights=LtSimulator.weights(csr, own);
+			ltWeightsCsr=csr;
+		}
+		return ltWeights;
+	}
+
+	/**
+	 * Get the simulator of the calling thread, built on the current snapshot of the social network
+	 * @return IC or LT simulator, by DIFFUSION
+	 */
+	private DiffusionEngine<V> getSimulator(){
+		CsrGraph<V> csr=socialNetwork.getCsr();
+		DiffusionEngine<V> simulator=simulators.get();
+		if(simulator==null||simulator.getCsr()!=csr){
+			if(DIFFUSION.equals("lt")) simulator=new LtSimulator<V>(csr, getLtWeights(csr));
+			else simulator=new IcSimulator<V>(csr, getEdgeProbs(csr));
+			simulators.set(simulator);
+		}
+		return simulator;
+	}
+
+	/**
+	 * Get the bit-parallel simulator of the calling thread, built on the current snapshot of the social network
+	 * @return bit-parallel IC simulator
+	 */
+	private BitIcSimulator<V> getBitSimulator(){
+		CsrGraph<V> csr=socialNetwork.getCsr();
+		BitIcSimulator<V> simulator=bitSimulators.get();
+		if(simulator==null||simulator.getCsr()!=csr){
+			simulator=new BitIcSimulator<V>(csr, getEdgeProbs(csr));
+			bitSimulators.set(simulator);
+		}
+		return simulator;
+	}
+
+	/**
+	 * Map nodes to their indices in the social network, -1 for a node not in it
+	 * @param nodes nodes
+	 * @return indices
+	 */
+	private int[] toIndices(HashSet<V> nodes){
+		CsrGraph<V> csr=socialNetwork.getCsr();
+		int[] indices=new int[nodes.size()];
+		int i=0;
+		for(V v: nodes){
+			indices[i++]=csr.indexOf(v);
+		}
+		return indices;
+	}
+
 
 	/**
 	 * Filter out nodes which are not socially connected, i.e., way points but not houses
@@ -0,0 +1,429 @@
+package mcmo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Pre-sampled live-edge worlds of the independent cascade model. In a world every edge is live with the activation
+ * probability, drawn once; a seed set then activates exactly the nodes within maxStages live hops of it. The worlds
+ * are stored as one bitset over the CSR edges each.
+ * <p>
+ * All candidates are evaluated on the same worlds (common random numbers), so differences between them are not
+ * blurred by sampling noise. The hop distances from a base set, e.g., the visited set of a greedy walk, are kept per
+ * world; adding a node then only searches from it through the nodes it brings closer, and recounts those and the
+ * nodes they lead to.
+ * <p>
+ * The influence in a world is counted as InfluenceModel's IC simulation counts it, i.e., successful activations: a
+ * seed counts once, and a node d live hops from the seeds counts once per live edge into it from a node d-1 hops away,
+ * as each of those parents activates it in the same stage. Averaged over the worlds, this estimates the same quantity
+ * as the simulation.
+ * @param <V> type of vertex ID
+ */
+public class LiveEdgeWorlds<V> {
+	private static final byte UNREACHED=Byte.MAX_VALUE;
+	private static final int MIN_WORLDS_PER_TASK=50;
+	private static final int MAX_LENGTH=Integer.MAX_VALUE-8; //longest array the JVM allocates
+
+	private final CsrGraph<V> csr;
+	private final int numWorlds;
+	private final int maxStages;
+	private final int words; //longs per world
+	private final long[] live; //bit e of world w is bit (e&63) of live[w*words+(e>>>6)]
+	private final int[] sources; //source node of each edge
+	private final int[] inOffsets; //edges into node v are inEdges[inOffsets[v]..inOffsets[v+1])
+	private final int[] inEdges;
+	private final ThreadLocal<Scratch> scratches;
+
+	//Base set and its hop distances per world, guarded by lock
+	private final ReentrantReadWriteLock lock=new ReentrantReadWriteLock();
+	private byte[][] dist; //dist[w][v] = live hops from the base set to v in world w, UNREACHED beyond maxStages
+	private int[] counts; //influence of the base set in each world
+	private long countTotal;
+	private boolean[] member; //member[v] if v is in the base set
+	private int size; //number of nodes in the base set
+
+	/**
+	 * Draw the worlds in parallel on the shared WorkerPool
+	 * @param csr CSR snapshot of the social network
+	 * @param probs activation probability of each edge, aligned with the CSR targets
+	 * @param maxStages max number of stages, i.e., live hops from the seeds, below 127
+	 * @param numWorlds number of worlds to draw; the worlds take numWorlds*edges bits, in one array of at most 2^31 longs
+	 * @param seed random seed; chunk i draws the stream (seed, i), so the worlds do not depend on the pool size
+	 * @throws IllegalArgumentException if maxStages is too large, or the worlds do not fit in one array
+	 * @throws Exception
+	 */
+	public LiveEdgeWorlds(CsrGraph<V> csr, double[] probs, int maxStages, int numWorlds, long seed) throws Exception {
+		if(maxStages>=UNREACHED) throw new IllegalArgumentException("maxStages must be below "+UNREACHED);
+		this.csr=csr;
+		this.numWorlds=numWorlds;
+		this.maxStages=maxStages;
+		this.words=(csr.edgeCount()+63)>>>6;
+		long length=(long) numWorlds*words;
+		if(length>MAX_LENGTH){
+			throw new IllegalArgumentException(numWorlds+" worlds of "+csr.edgeCount()+" edges do not fit in one array; at most "
+					+(MAX_LENGTH/Math.max(1, words))+" worlds fit, see -Dmcmo.worlds");
+		}
+		this.live=new long[(int) length];
+
+		//INDEX the edges into each node, to count the parents of a node whose distance changes
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		int n=csr.size(), m=csr.edgeCount();
+		sources=new int[m];
+		inOffsets=new int[n+1];
+		inEdges=new int[m];
+		for(int x=0; x<n; x++){
+			for(int e=offsets[x]; e<offsets[x+1]; e++){
+				sources[e]=x;
+				inOffsets[targets[e]+1]++;
+			}
+		}
+		for(int v=0; v<n; v++){
+			inOffsets[v+1]+=inOffsets[v];
+		}
+		int[] fill=Arrays.copyOf(inOffsets, n);
+		for(int e=0; e<m; e++){
+			inEdges[fill[targets[e]]++]=e;
+		}
+
+		int[] thresholds=new int[probs.length];
+		for(int e=0; e<probs.length; e++){
+			thresholds[e]=IcSimulator.threshold(probs[e]);
+		}
+		int chunks=Math.max(1, numWorlds/MIN_WORLDS_PER_TASK);
+		ArrayList<Sampler> tasks=new ArrayList<Sampler>();
+		int from=0;
+		for(int i=0; i<chunks; i++){
+			int count=WorkerPool.chunkSize(numWorlds, chunks, i);
+			tasks.add(new Sampler(thresholds, from, from+count, seed, i));
+			from+=count;
+		}
+		for(Future<Void> result: WorkerPool.get().invokeAll(tasks)){
+			result.get();
+		}
+
+		scratches=new ThreadLocal<Scratch>(){
+			@Override
+			protected Scratch initialValue(){
+				return new Scratch(LiveEdgeWorlds.this.csr.size());
+			}
+		};
+	}
+
+	/**
+	 * Memory the worlds take once in use: the live-edge bitsets, the hop distances from the base set kept per world, and
+	 * the index of edges into each node
+	 * @param nodes number of nodes of the network
+	 * @param edges number of edges of the network
+	 * @param numWorlds number of worlds
+	 * @return bytes
+	 */
+	public static long memoryBytes(int nodes, int edges, int numWorlds){
+		long words=(edges+63)>>>6;
+		return numWorlds*(8*words+nodes+4L)+8L*edges+4L*nodes;
+	}
+
+	public CsrGraph<V> getCsr(){
+		return csr;
+	}
+
+	public int getNumWorlds(){
+		return numWorlds;
+	}
+
+	/**
+	 * Estimate the expected influence of a seed set from scratch
+	 * @param seeds indices of seed nodes, distinct; negative entries (nodes not in the network) count as one each
+	 * @return average number of successful activations over the worlds, plus the seeds not in the network
+	 */
+	public double estimate(int[] seeds){
+		Scratch s=scratches.get();
+		int outside=0;
+		for(int v: seeds){
+			if(v<0) outside++;
+		}
+		long total=0;
+		for(int w=0; w<numWorlds; w++){
+			s.nextEpoch();
+			int tail=0;
+			for(int v: seeds){
+				if(v<0||s.stamp[v]==s.epoch) continue;
+				s.stamp[v]=s.epoch;
+				s.depth[v]=0;
+				s.queue[tail++]=v;
+			}
+			total+=count(w, s, tail);
+		}
+		return (double) total/numWorlds+outside;
+	}
+
+	/**
+	 * Estimate the expected influence of a base set plus one node. The base set is kept between calls and extended
+	 * in place if it only gained nodes, so the visited set of a greedy walk costs one search per new node per world.
+	 * @param base indices of nodes in the base set, distinct and in the network
+	 * @param v index of node to add
+	 * @return average number of successful activations over the worlds
+	 */
+	public double estimateWith(int[] base, int v){
+		lock.writeLock().lock();
+		try {
+			setBase(base);
+			lock.readLock().lock(); //downgrade, so that other candidates can be evaluated at the same time
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		try {
+			if(member[v]) return (double) countTotal/numWorlds;
+			Scratch s=scratches.get();
+			long gain=0;
+			for(int w=0; w<numWorlds; w++){
+				gain+=gain(w, dist[w], v, s);
+			}
+			return (double) (countTotal+gain)/numWorlds;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Make the base set equal to the given nodes, extending the current one if it is a subset
+	 */
+	private void setBase(int[] base){
+		if(dist==null){
+			dist=new byte[numWorlds][csr.size()];
+			counts=new int[numWorlds];
+			member=new boolean[csr.size()];
+			reset();
+		}
+
+		int known=0;
+		for(int v: base){
+			if(member[v]) known++;
+		}
+		if(known<size) reset(); //the base set lost nodes, start over
+		for(int v: base){
+			if(!member[v]) add(v);
+		}
+	}
+
+	private void reset(){
+		for(byte[] d: dist){
+			Arrays.fill(d, UNREACHED);
+		}
+		Arrays.fill(counts, 0);
+		Arrays.fill(member, false);
+		countTotal=0;
+		size=0;
+	}
+
+	/**
+	 * Add a node to the base set, lowering the distances it brings closer in every world
+	 */
+	private void add(int v){
+		Scratch s=scratches.get();
+		for(int w=0; w<numWorlds; w++){
+			byte[] d=dist[w];
+			int gain=gain(w, d, v, s);
+			for(int k=0; k<s.closer; k++){
+				int y=s.queue[k];
+				d[y]=(byte) s.depth[y];
+			}
+			counts[w]+=gain;
+			countTotal+=gain;
+		}
+		member[v]=true;
+		size++;
+	}
+
+	/**
+	 * Change of the influence in a world when a node joins the base set. Searches the nodes the new node brings
+	 * closer, which are left first in the scratch queue with their new distances, then recounts them and the nodes
+	 * they lead to, the only counts that can change.
+	 * @param w world
+	 * @param d distances from the base set in this world
+	 * @param v index of node to add
+	 * @param s scratch space
+	 * @return change of the number of successful activations
+	 */
+	private int gain(int w, byte[] d, int v, Scratch s){
+		s.nextEpoch();
+		s.closer=0;
+		if(d[v]==0) return 0;
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		int[] queue=s.queue;
+		int[] stamp=s.stamp;
+		int[] depth=s.depth;
+		int epoch=s.epoch;
+		int base=w*words;
+
+		//SEARCH the nodes that get closer
+		stamp[v]=epoch;
+		depth[v]=0;
+		queue[0]=v;
+		int head=0, tail=1;
+		while(head<tail){
+			int x=queue[head++];
+			int nd=depth[x]+1;
+			if(nd>maxStages) continue;
+			for(int e=offsets[x]; e<offsets[x+1]; e++){
+				if((live[base+(e>>>6)]&(1L<<e))==0) continue;
+				int y=targets[e];
+				if(stamp[y]==epoch||d[y]<=nd) continue; //breadth first, so the first visit is the closest
+				stamp[y]=epoch;
+				depth[y]=nd;
+				queue[tail++]=y;
+			}
+		}
+		s.closer=tail;
+
+		//RECOUNT them and the nodes they lead to
+		int[] mark=s.mark;
+		int[] affected=s.affected;
+		int size=0;
+		for(int k=0; k<tail; k++){
+			int x=queue[k];
+			if(mark[x]!=epoch){
+				mark[x]=epoch;
+				affected[size++]=x;
+			}
+			for(int e=offsets[x]; e<offsets[x+1]; e++){
+				if((live[base+(e>>>6)]&(1L<<e))==0) continue;
+				int y=targets[e];
+				if(mark[y]!=epoch){
+					mark[y]=epoch;
+					affected[size++]=y;
+				}
+			}
+		}
+		int gain=0;
+		for(int k=0; k<size; k++){
+			int y=affected[k];
+			gain+=parents(y, (stamp[y]==epoch)?depth[y]:d[y], d, s, base)-parents(y, d[y], d, null, base);
+		}
+		return gain;
+	}
+
+	/**
+	 * Count of a node in a world: 1 at distance 0, else the number of live edges into it from nodes one hop closer
+	 * @param y node
+	 * @param dy distance of y
+	 * @param d distances from the base set
+	 * @param s scratch space holding the lowered distances, null for the distances of the base set alone
+	 * @param base offset of the world in the live bitsets
+	 */
+	private int parents(int y, int dy, byte[] d, Scratch s, int base){
+		if(dy==0) return 1;
+		if(dy>maxStages) return 0;
+		int count=0;
+		for(int k=inOffsets[y]; k<inOffsets[y+1]; k++){
+			int e=inEdges[k];
+			if((live[base+(e>>>6)]&(1L<<e))==0) continue;
+			int x=sources[e];
+			int dx=(s!=null&&s.stamp[x]==s.epoch)?s.depth[x]:d[x];
+			if(dx==dy-1) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Breadth first search over the live edges of a world from the queued seeds, counting each live edge from a node
+	 * to one a hop further
+	 * @param w world
+	 * @param s scratch space holding the queued seeds, stamped with depth 0
+	 * @param tail number of queued seeds
+	 * @return number of successful activations, the seeds included
+	 */
+	private int count(int w, Scratch s, int tail){
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		int[] queue=s.queue;
+		int[] stamp=s.stamp;
+		int[] depth=s.depth;
+		int epoch=s.epoch;
+		int base=w*words;
+
+		int count=tail;
+		int head=0;
+		while(head<tail){
+			int x=queue[head++];
+			int nd=depth[x]+1;
+			if(nd>maxStages) continue;
+			for(int e=offsets[x]; e<offsets[x+1]; e++){
+				if((live[base+(e>>>6)]&(1L<<e))==0) continue;
+				int y=targets[e];
+				if(stamp[y]==epoch){
+					if(depth[y]==nd) count++; //another parent in the same stage
+					continue;
+				}
+				stamp[y]=epoch;
+				depth[y]=nd;
+				queue[tail++]=y;
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Draws the live edges of a range of worlds with its own random generator
+	 */
+	private class Sampler implements Callable<Void> {
+		private final int[] thresholds; //edge e is live iff a uniform 31-bit draw is at most thresholds[e]
+		private final int from, to;
+		private final SplitMix64 random;
+
+		Sampler(int[] thresholds, int from, int to, long seed, int index){
+			this.thresholds=thresholds;
+			this.from=from;
+			this.to=to;
+			this.random=SplitMix64.stream(seed, 0, index);
+		}
+
+		@Override
+		public Void call(){
+			int m=csr.edgeCount();
+			for(int w=from; w<to; w++){
+				int base=w*words;
+				for(int e=0; e<m; e++){
+					if((random.nextInt()>>>1)<=thresholds[e]) live[base+(e>>>6)]|=1L<<e;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Per-thread search state, valid where the stamp equals the current epoch
+	 */
+	private static class Scratch {
+		final int[] stamp;
+		final int[] depth;
+		final int[] queue;
+		final int[] mark; //nodes whose count is redone, valid where it equals the current epoch
+		final int[] affected;
+		int closer; //number of nodes brought closer by the last gain, first in queue
+		int epoch;
+
+		Scratch(int n){
+			stamp=new int[n];
+			depth=new int[n];
+			queue=new int[n];
+			mark=new int[n];
+			affected=new int[n];
+		}
+
+		void nextEpoch(){
+			epoch++;
+			if(epoch==Integer.MAX_VALUE){ //wrap around
+				Arrays.fill(stamp, 0);
+				Arrays.fill(mark, 0);
+				epoch=1;
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package mcmo;
+
+import java.util.Arrays;
+
+/**
+ * Linear threshold (LT) runs over the CSR snapshot of a social network, for one worker thread.
+ * <p>
+ * Every edge u->v carries a weight, and the weights into a node sum to at most 1. In each run every node draws a
+ * uniform threshold in [0, 1), and becomes active in the stage after the total weight from its active in-neighbors
+ * reaches it. Thresholds are drawn lazily, when a node first receives weight in a run, so a run costs in proportion
+ * to the edges out of active nodes rather than to the size of the network, and it stops as soon as a stage activates
+ * nobody. State lives in epoch-stamped arrays as in IcSimulator, so clearing it between runs is O(1).
+ * @param <V> type of vertex ID
+ */
+public class LtSimulator<V> implements DiffusionEngine<V> {
+	private final CsrGraph<V> csr;
+	private final double[] weights; //weight of each edge, aligned with the CSR targets
+	private final int[] reached; //reached[v]==epoch if v is active
+	private final int[] touched; //touched[v]==epoch if v has received weight, so its threshold and pressure are set
+	private final double[] threshold; //threshold of v in this run
+	private final double[] pressure; //total weight from the active in-neighbors of v
+	private int[] frontier, next;
+	private int epoch;
+
+	/**
+	 * @param csr CSR snapshot of the social network
+	 * @param weights weight of each edge, aligned with the CSR targets, see weights(csr, probs)
+	 */
+	public LtSimulator(CsrGraph<V> csr, double[] weights) {
+		this.csr=csr;
+		this.weights=weights;
+		int n=csr.size();
+		reached=new int[n];
+		touched=new int[n];
+		threshold=new double[n];
+		pressure=new double[n];
+		frontier=new int[n];
+		next=new int[n];
+	}
+
+	@Override
+	public CsrGraph<V> getCsr(){
+		return csr;
+	}
+
+	/**
+	 * Weights of the edges of a network: an edge's own weight if it has one, 1/in-degree of its target otherwise
+	 * (Kempe et al.), scaled down per target where they sum to more than 1
+	 * @param csr CSR snapshot of the social network
+	 * @param probs weight of each edge, aligned with the CSR targets, NaN for none
+	 * @return new array aligned with the CSR targets
+	 */
+	public static double[] weights(CsrGraph<?> csr, double[] probs){
+		int[] targets=csr.getTargets();
+		int n=csr.size();
+		int[] inDegree=new int[n];
+		for(int v: targets){
+			inDegree[v]++;
+		}
+		double[] w=new double[targets.length];
+		double[] sum=new double[n];
+		for(int e=0; e<w.length; e++){
+			double p=probs[e];
+			w[e]=Double.isNaN(p)?1.0/inDegree[targets[e]]:Math.max(0, p);
+			sum[targets[e]]+=w[e];
+		}
+		for(int e=0; e<w.length; e++){
+			double s=sum[targets[e]];
+			if(s>1) w[e]/=s;
+		}
+		return w;
+	}
+
+	/**
+	 * Simulate one cascade
+	 * @param seeds indices of seed nodes, distinct; negative entries (nodes not in the network) count but do not spread
+	 * @param maxStages max number of stages
+	 * @param random random number generator of the calling worker
+	 * @return influence, i.e., number of seeds plus activated nodes
+	 */
+	@Override
+	public int simulate(int[] seeds, int maxStages, SplitMix64 random){
+		int[] offsets=csr.getOffsets();
+		int[] targets=csr.getTargets();
+		nextEpoch();
+
+		int influence=seeds.length;
+		int size=0;
+		for(int s: seeds){
+			if(s<0) continue;
+			reached[s]=epoch;
+			frontier[size++]=s;
+		}
+
+		for (int t=0; t<maxStages&&size>0; t++){	//Each step, newly active nodes add their weight to inactive neighbors
+			int nextSize=0;
+			for(int i=0; i<size; i++){
+				int v=frontier[i];
+				for(int e=offsets[v]; e<offsets[v+1]; e++){
+					int nb=targets[e];
+					if(reached[nb]==epoch||weights[e]<=0) continue;
+					if(touched[nb]!=epoch){
+						touched[nb]=epoch;
+						threshold[nb]=(random.nextLong()>>>11)*0x1p-53;
+						pressure[nb]=0;
+					}
+					pressure[nb]+=weights[e];
+					if(pressure[nb]>=threshold[nb]){ //active from the next stage on
+						reached[nb]=epoch;
+						next[nextSize++]=nb;
+						influence++;
+					}
+				}
+			}
+
+			int[] tmp=frontier;
+			frontier=next;
+			next=tmp;
+			size=nextSize;
+		}
+		return influence;
+	}
+
+	private void nextEpoch(){
+		epoch++;
+		if(epoch==Integer.MAX_VALUE){ //wrap around
+			Arrays.fill(reached, 0);
+			Arrays.fill(touched, 0);
+			epoch=1;
+		}
+	}
+}
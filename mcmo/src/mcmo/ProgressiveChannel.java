@@ -0,0 +1,14 @@
+package mcmo;
+
+/**
+ * A channel whose adoption is estimated by sampling and can be refined batch by batch, so a caller comparing it to
+ * known values can stop as soon as the comparison is decided.
+ */
+public interface ProgressiveChannel extends Channel {
+	/**
+	 * @param queryBudget budget
+	 * @return stream of estimates of the adoption at the budget
+	 * @throws Exception
+	 */
+	public Estimate.Stream getAdoptionProgress(double queryBudget) throws Exception;
+}
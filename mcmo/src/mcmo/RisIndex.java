@@ -0,0 +1,457 @@
+package mcmo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Reverse influence sampling (RIS) for the independent cascade model. A reverse-reachable (RR) set is drawn by
+ * picking a random root and walking the edges backwards, each edge being live with the activation probability,
+ * for at most maxStages hops. A seed set activates the root of an RR set within maxStages stages exactly when it
+ * hits the set, so n times the fraction of RR sets hit by a seed set estimates its expected influence.
+ * <p>
+ * The RR sets are drawn once, stored in CSR form and indexed node -> sets, so an estimate is a matter of counting
+ * the sets of the seeds. A Coverage tracks the sets hit by a growing node set, such as the visited set of a greedy
+ * walk, and gives the marginal gain of one more node from that node's sets alone. A Sampling draws RR sets in
+ * rounds, for estimators such as ImmSelector which decide how many sets they need from the ones drawn so far.
+ * <p>
+ * RR sets count activated nodes, each once. InfluenceModel's IC simulation and live-edge worlds count successful
+ * activations instead, so a node activated by two parents in the same stage counts twice there. The two are different
+ * quantities, not two estimates of one: this one is lower where active nodes share neighbors. For that reason the
+ * greedy walks, whose influence and adoption are in successful activations, refuse the modes built on RR sets.
+ * @param <V> type of vertex ID
+ */
+public class RisIndex<V> {
+	//RR sets per task, fixed so that chunk i always draws the same sets from the stream (seed, i): the sets do not
+	//depend on the pool size, and the first m sets are the same however many are drawn
+	private static final int SETS_PER_TASK=1000;
+
+	private final CsrGraph<V> csr;
+	private final int numSets;
+	private final int[] setOffsets, setNodes; //nodes of RR set i: setNodes[setOffsets[i]] .. setNodes[setOffsets[i+1]-1]
+	private final int[] nodeOffsets, nodeSets; //RR sets containing node v: nodeSets[nodeOffsets[v]] .. nodeSets[nodeOffsets[v+1]-1]
+	private final ThreadLocal<int[]> stamps; //per thread, marks counted sets with the current epoch in stamps[numSets]
+
+	/**
+	 * Draw RR sets in parallel on the shared WorkerPool
+	 * @param csr CSR snapshot of the social network
+	 * @param reverseProbs activation probability of each edge, aligned with the targets of the reverse CSR
+	 * @param maxStages max number of stages, i.e., hops from the root
+	 * @param numSets number of RR sets to draw
+	 * @param seed random seed; chunk i draws the stream (seed, i), so the sets do not depend on the pool size
+	 * @throws Exception
+	 */
+	public RisIndex(CsrGraph<V> csr, double[] reverseProbs, int maxStages, int numSets, long seed) throws Exception {
+		this(sample(csr, reverseProbs, maxStages, numSets, seed));
+	}
+
+	private static <V> Sampling<V> sample(CsrGraph<V> csr, double[] reverseProbs, int maxStages, int numSets, long seed) throws Exception{
+		Sampling<V> sampling=new Sampling<V>(csr, reverseProbs, maxStages, seed);
+		sampling.extend(numSets);
+		return sampling;
+	}
+
+	/**
+	 * Index the RR sets drawn so far by a sampling
+	 */
+	private RisIndex(Sampling<V> sampling) {
+		this.csr=sampling.csr;
+		this.numSets=sampling.numSets;
+		List<Sampler> chunks=sampling.chunks;
+
+		//CONCATENATE the chunks
+		setOffsets=new int[numSets+1];
+		int total=0;
+		for(Sampler s: chunks){
+			total+=s.nodes.size;
+		}
+		setNodes=new int[total];
+		int set=0, pos=0;
+		for(Sampler s: chunks){
+			for(int k=0; k<s.count; k++){
+				setOffsets[set+1]=setOffsets[set]+s.sizes.get(k);
+				set++;
+			}
+			System.arraycopy(s.nodes.a, 0, setNodes, pos, s.nodes.size);
+			pos+=s.nodes.size;
+		}
+
+		//INDEX node -> sets by counting sort
+		int n=csr.size();
+		nodeOffsets=new int[n+1];
+		for(int v: setNodes){
+			nodeOffsets[v+1]++;
+		}
+		for(int v=0; v<n; v++){
+			nodeOffsets[v+1]+=nodeOffsets[v];
+		}
+		nodeSets=new int[total];
+		int[] next=Arrays.copyOf(nodeOffsets, n);
+		for(int i=0; i<numSets; i++){
+			for(int k=setOffsets[i]; k<setOffsets[i+1]; k++){
+				nodeSets[next[setNodes[k]]++]=i;
+			}
+		}
+
+		final int m=numSets;
+		stamps=new ThreadLocal<int[]>(){
+			@Override
+			protected int[] initialValue(){
+				return new int[m+1];
+			}
+		};
+	}
+
+	public CsrGraph<V> getCsr(){
+		return csr;
+	}
+
+	public int getNumSets(){
+		return numSets;
+	}
+
+	/**
+	 * @return total size of all RR sets
+	 */
+	public int getTotalSize(){
+		return setNodes.length;
+	}
+
+	/**
+	 * Estimate the expected influence of a seed set
+	 * @param seeds indices of seed nodes, distinct; negative entries (nodes not in the network) count as one each
+	 * @return n times the fraction of RR sets hit, plus the seeds not in the network
+	 */
+	public double estimate(int[] seeds){
+		int[] stamp=stamps.get();
+		int epoch=nextEpoch(stamp);
+		int hit=0, outside=0;
+		for(int s: seeds){
+			if(s<0){
+				outside++;
+				continue;
+			}
+			for(int k=nodeOffsets[s]; k<nodeOffsets[s+1]; k++){
+				int i=nodeSets[k];
+				if(stamp[i]!=epoch){
+					stamp[i]=epoch;
+					hit++;
+				}
+			}
+		}
+		return scale(hit)+outside;
+	}
+
+	/**
+	 * @return coverage of the empty set
+	 */
+	public Coverage emptyCoverage(){
+		return new Coverage(new boolean[csr.size()], new boolean[numSets], 0, 0);
+	}
+
+	private double scale(int hit){
+		return (double) csr.size()*hit/numSets;
+	}
+
+	/**
+	 * Greedy maximum coverage: repeatedly pick the node hitting the most RR sets not hit yet, ties to the lowest index.
+	 * The sets hit by the first j picks are at least 1-1/e of the most any j nodes hit, for every j.
+	 * @param k number of nodes to pick
+	 * @return indices of the picked nodes, in pick order; fewer than k if the network is smaller
+	 */
+	public int[] greedySeeds(int k){
+		int n=csr.size();
+		int[] gain=new int[n]; //sets of v not hit yet, -1 once picked
+		for(int v=0; v<n; v++){
+			gain[v]=nodeOffsets[v+1]-nodeOffsets[v];
+		}
+		boolean[] covered=new boolean[numSets];
+		int[] seeds=new int[Math.min(k, n)];
+		for(int j=0; j<seeds.length; j++){
+			int best=-1;
+			for(int v=0; v<n; v++){
+				if(best<0||gain[v]>gain[best]) best=v;
+			}
+			seeds[j]=best;
+			gain[best]=-1;
+			for(int p=nodeOffsets[best]; p<nodeOffsets[best+1]; p++){
+				int i=nodeSets[p];
+				if(covered[i]) continue;
+				covered[i]=true;
+				for(int q=setOffsets[i]; q<setOffsets[i+1]; q++){
+					int u=setNodes[q];
+					if(gain[u]>0) gain[u]--;
+				}
+			}
+		}
+		return seeds;
+	}
+
+	private static int nextEpoch(int[] stamp){
+		int epoch=++stamp[stamp.length-1];
+		if(epoch==Integer.MAX_VALUE){ //wrap around
+			Arrays.fill(stamp, 0);
+			epoch=stamp[stamp.length-1]=1;
+		}
+		return epoch;
+	}
+
+	/**
+	 * The RR sets hit by a set of nodes in the network. It is immutable, so it can be shared by threads; adding a node
+	 * gives a new one in time proportional to the sets of that node plus a copy of the flags.
+	 */
+	public class Coverage {
+		private final boolean[] member; //member[v] if node v is in the set
+		private final boolean[] covered; //covered[i] if RR set i is hit
+		private final int size; //number of nodes
+		private final int hit; //number of RR sets hit
+
+		private Coverage(boolean[] member, boolean[] covered, int size, int hit){
+			this.member=member;
+			this.covered=covered;
+			this.size=size;
+			this.hit=hit;
+		}
+
+		public int size(){
+			return size;
+		}
+
+		/**
+		 * Whether a node is in the set
+		 * @param v index of node
+		 */
+		public boolean contains(int v){
+			return member[v];
+		}
+
+		/**
+		 * @return estimated expected influence of the set
+		 */
+		public double getInfluence(){
+			return scale(hit);
+		}
+
+		/**
+		 * Estimated expected influence of the set plus one node, from the RR sets of that node which are not hit yet
+		 * @param v index of node
+		 * @return estimated expected influence
+		 */
+		public double getInfluenceWith(int v){
+			if(member[v]) return getInfluence();
+			int gain=0;
+			for(int k=nodeOffsets[v]; k<nodeOffsets[v+1]; k++){
+				if(!covered[nodeSets[k]]) gain++;
+			}
+			return scale(hit+gain);
+		}
+
+		/**
+		 * Coverage of the set plus one node
+		 * @param v index of node
+		 * @return new coverage; this one is unchanged
+		 */
+		public Coverage add(int v){
+			return addAll(new int[]{v});
+		}
+
+		/**
+		 * Coverage of the set plus some nodes
+		 * @param vs indices of nodes
+		 * @return new coverage; this one is unchanged
+		 */
+		public Coverage addAll(int[] vs){
+			boolean[] m=Arrays.copyOf(member, member.length);
+			boolean[] c=Arrays.copyOf(covered, covered.length);
+			int n=size, h=hit;
+			for(int v: vs){
+				if(m[v]) continue;
+				m[v]=true;
+				n++;
+				for(int k=nodeOffsets[v]; k<nodeOffsets[v+1]; k++){
+					if(!c[nodeSets[k]]){
+						c[nodeSets[k]]=true;
+						h++;
+					}
+				}
+			}
+			return new Coverage(m, c, n, h);
+		}
+	}
+
+	/**
+	 * RR sets drawn in rounds, each round adding sets to the ones drawn before
+	 * @param <V> type of vertex ID
+	 */
+	public static class Sampling<V> {
+		private final CsrGraph<V> csr;
+		private final int[] thresholds; //reverse edge e is live iff a uniform 31-bit draw is at most thresholds[e]
+		private final int maxStages;
+		private final long seed;
+		private final ArrayList<Sampler> chunks=new ArrayList<Sampler>();
+		private int numSets;
+
+		/**
+		 * @param csr CSR snapshot of the social network
+		 * @param reverseProbs activation probability of each edge, aligned with the targets of the reverse CSR
+		 * @param maxStages max number of stages, i.e., hops from the root
+		 * @param seed random seed; chunk i draws the stream (seed, i)
+		 */
+		public Sampling(CsrGraph<V> csr, double[] reverseProbs, int maxStages, long seed) {
+			this.csr=csr;
+			this.maxStages=maxStages;
+			this.seed=seed;
+			this.thresholds=new int[reverseProbs.length];
+			for(int e=0; e<reverseProbs.length; e++){
+				thresholds[e]=IcSimulator.threshold(reverseProbs[e]);
+			}
+		}
+
+		public CsrGraph<V> getCsr(){
+			return csr;
+		}
+
+		/**
+		 * @return number of RR sets drawn so far
+		 */
+		public int getNumSets(){
+			return numSets;
+		}
+
+		/**
+		 * Draw RR sets in parallel on the shared WorkerPool until there are a given number
+		 * @param numSets number of RR sets to have; nothing is drawn if there are as many already
+		 * @throws Exception
+		 */
+		public void extend(int numSets) throws Exception{
+			if(numSets<=this.numSets) return;
+			int first=this.numSets/SETS_PER_TASK; //first chunk to draw
+			if(this.numSets%SETS_PER_TASK!=0){ //redraw the last chunk in full, the same sets and more
+				chunks.remove(chunks.size()-1);
+				this.numSets=first*SETS_PER_TASK;
+			}
+			ArrayList<Sampler> tasks=new ArrayList<Sampler>();
+			for(int i=first; (long) i*SETS_PER_TASK<numSets; i++){
+				int count=(int) Math.min(SETS_PER_TASK, numSets-(long) i*SETS_PER_TASK);
+				tasks.add(new Sampler(csr.getReverse(), thresholds, maxStages, count, seed, i));
+			}
+			for(Future<Sampler> result: WorkerPool.get().invokeAll(tasks)){
+				chunks.add(result.get());
+			}
+			this.numSets=numSets;
+		}
+
+		/**
+		 * @return index of the RR sets drawn so far
+		 */
+		public RisIndex<V> index(){
+			return new RisIndex<V>(this);
+		}
+	}
+
+	/**
+	 * Draws a chunk of RR sets by a depth-limited reverse breadth first search with its own random generator
+	 */
+	private static class Sampler implements Callable<Sampler> {
+		//per thread search state, reused across chunks: a chunk costs its sets, not the size of the network
+		private static final ThreadLocal<Scratch> scratches=new ThreadLocal<Scratch>();
+
+		private final CsrGraph<?> reverse;
+		private final int[] thresholds; //reverse edge e is live iff a uniform 31-bit draw is at most thresholds[e]
+		private final int maxStages;
+		private final int count;
+		private final SplitMix64 random;
+		final IntList sizes=new IntList();
+		final IntList nodes=new IntList();
+
+		Sampler(CsrGraph<?> reverse, int[] thresholds, int maxStages, int count, long seed, int index){
+			this.reverse=reverse;
+			this.thresholds=thresholds;
+			this.maxStages=maxStages;
+			this.count=count;
+			this.random=SplitMix64.stream(seed, 0, index);
+		}
+
+		@Override
+		public Sampler call(){
+			int n=reverse.size();
+			int[] offsets=reverse.getOffsets();
+			int[] targets=reverse.getTargets();
+			Scratch s=scratches.get();
+			if(s==null||s.reached.length<n){
+				s=new Scratch(n);
+				scratches.set(s);
+			}
+			int[] reached=s.reached;
+			int[] queue=s.queue;
+			for(int j=0; j<count; j++){
+				if(n==0){ //empty network, empty sets
+					sizes.add(0);
+					continue;
+				}
+				int r=s.nextEpoch();
+				int root=random.nextInt(n);
+				int head=0, tail=0;
+				reached[root]=r;
+				queue[tail++]=root;
+				for(int depth=0; depth<maxStages&&head<tail; depth++){
+					int end=tail;
+					while(head<end){
+						int v=queue[head++];
+						for(int e=offsets[v]; e<offsets[v+1]; e++){
+							int u=targets[e];
+							if(reached[u]!=r&&(random.nextInt()>>>1)<=thresholds[e]){
+								reached[u]=r;
+								queue[tail++]=u;
+							}
+						}
+					}
+				}
+				sizes.add(tail);
+				for(int k=0; k<tail; k++){
+					nodes.add(queue[k]);
+				}
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * Search state of a thread, valid where reached equals the current epoch
+	 */
+	private static class Scratch {
+		final int[] reached;
+		final int[] queue;
+		int epoch;
+
+		Scratch(int n){
+			reached=new int[n];
+			queue=new int[n];
+		}
+
+		int nextEpoch(){
+			epoch++;
+			if(epoch==Integer.MAX_VALUE){ //wrap around
+				Arrays.fill(reached, 0);
+				epoch=1;
+			}
+			return epoch;
+		}
+	}
+
+	private static class IntList {
+		int[] a=new int[16];
+		int size;
+
+		void add(int x){
+			if(size==a.length) a=Arrays.copyOf(a, 2*size);
+			a[size++]=x;
+		}
+
+		int get(int k){
+			return a[k];
+		}
+	}
+}
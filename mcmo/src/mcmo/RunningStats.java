@@ -0,0 +1,57 @@
+package mcmo;
+
+/**
+ * Mean and variance of a stream of samples by Welford's method, which does not lose precision to cancellation like
+ * summing squares does. Stats of separate streams, e.g., of parallel tasks, merge exactly (Chan et al.).
+ */
+public class RunningStats {
+	private long count;
+	private double mean;
+	private double m2; //sum of squared deviations from the mean
+
+	/**
+	 * Add a sample
+	 * @param x sample
+	 */
+	public void add(double x){
+		count++;
+		double delta=x-mean;
+		mean+=delta/count;
+		m2+=delta*(x-mean);
+	}
+
+	/**
+	 * Add the samples of another stream
+	 * @param other stats of the other stream, unchanged
+	 */
+	public void merge(RunningStats other){
+		if(other.count==0) return;
+		long n=count+other.count;
+		double delta=other.mean-mean;
+		mean+=delta*other.count/n;
+		m2+=other.m2+delta*delta*((double) count*other.count/n);
+		count=n;
+	}
+
+	public long count(){
+		return count;
+	}
+
+	public double mean(){
+		return mean;
+	}
+
+	/**
+	 * @return sample variance, 0 with fewer than two samples
+	 */
+	public double variance(){
+		return (count<2)?0:m2/(count-1);
+	}
+
+	/**
+	 * @return standard error of the mean, infinite with fewer than two samples
+	 */
+	public double standardError(){
+		return (count<2)?Double.POSITIVE_INFINITY:Math.sqrt(variance()/count);
+	}
+}
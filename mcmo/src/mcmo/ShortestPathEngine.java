@@ -0,0 +1,373 @@
+package mcmo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The routing module: all shortest path queries over an immutable CSR graph go through this class.
+ * It offers single-source, point-to-point (with early exit) and one-to-many queries writing into primitive
+ * buffers, and point-to-point callers may pick the algorithm variant; the default is A* where coordinates exist.
+ * <p>
+ * Queries are safe to run from many threads at once. The working state (distances, predecessors, priority queue)
+ * lives in a per-thread workspace which is reused across calls, so nothing is written into the graph or its Vertex
+ * objects and a query allocates no O(n) arrays.
+ * @param <V> type of vertex ID
+ */
+public class ShortestPathEngine<V> {
+	/**
+	 * Point-to-point algorithm variants
+	 */
+	public enum Algorithm {
+		DIJKSTRA, //plain Dijkstra from the source, stopping once the target is settled
+		BIDIRECTIONAL_DIJKSTRA, //Dijkstra from both ends, stopping once the two searches meet
+		A_STAR //Dijkstra guided by a straight-line lower bound to the target, see CsrGraph.getHeuristicScale
+	}
+
+	private final CsrGraph<V> csr;
+	private final ThreadLocal<Workspace> workspaces; //forward search
+	private final ThreadLocal<Workspace> backWorkspaces; //backward search of bidirectional Dijkstra
+
+	public ShortestPathEngine(final CsrGraph<V> csr) {
+		this.csr=csr;
+		this.workspaces=new ThreadLocal<Workspace>(){
+			@Override
+			protected Workspace initialValue(){
+				return new Workspace(csr.size());
+			}
+		};
+		this.backWorkspaces=new ThreadLocal<Workspace>(){
+			@Override
+			protected Workspace initialValue(){
+				return new Workspace(csr.size());
+			}
+		};
+	}
+
+	public CsrGraph<V> getCsr(){
+		return csr;
+	}
+
+	/**
+	 * Single source shortest distances
+	 * @param source index of source vertex
+	 * @param dist [out] shortest distance to each vertex, infinity if not reachable
+	 * @param prev [out] index of previous vertex on the shortest path, -1 for the source and unreachable vertices; may be null
+	 */
+	public void getDistances(int source, double[] dist, int[] prev){
+		Workspace w=search(source, -1, null);
+		for(int v=0; v<dist.length; v++){
+			boolean reached=w.stamp[v]==w.epoch;
+			dist[v]=reached?w.dist[v]:Double.POSITIVE_INFINITY;
+			if(prev!=null) prev[v]=reached?w.prev[v]:-1;
+		}
+	}
+
+	/**
+	 * One-to-many shortest distances, stopping as soon as all targets are settled
+	 * @param source index of source vertex
+	 * @param targets indices of target vertices
+	 * @param dist [out] dist[i] is the shortest distance to targets[i], infinity if not reachable
+	 */
+	public void getDistances(int source, int[] targets, double[] dist){
+		Workspace w=search(source, -1, targets);
+		for(int i=0; i<targets.length; i++){
+			dist[i]=(w.stamp[targets[i]]==w.epoch)?w.dist[targets[i]]:Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Point-to-point shortest distance by A*, which is plain Dijkstra if the graph has no coordinates
+	 * @param source index of source vertex
+	 * @param target index of target vertex
+	 * @return shortest distance, infinity if not reachable
+	 */
+	public double getDistance(int source, int target){
+		return getDistance(source, target, Algorithm.A_STAR);
+	}
+
+	/**
+	 * Point-to-point shortest distance
+	 * @param source index of source vertex
+	 * @param target index of target vertex
+	 * @param algorithm algorithm variant
+	 * @return shortest distance, infinity if not reachable
+	 */
+	public double getDistance(int source, int target, Algorithm algorithm){
+		return getShortestPath(source, target, null, algorithm);
+	}
+
+	/**
+	 * Point-to-point shortest path by A*, which is plain Dijkstra if the graph has no coordinates
+	 * @param source index of source vertex
+	 * @param target index of target vertex
+	 * @param path [out] vertices of the path from source to target, left empty if not reachable
+	 * @return shortest distance, infinity if not reachable
+	 */
+	public double getShortestPath(int source, int target, ArrayList<V> path){
+		return getShortestPath(source, target, path, Algorithm.A_STAR);
+	}
+
+	/**
+	 * Point-to-point shortest path
+	 * @param source index of source vertex
+	 * @param target index of target vertex
+	 * @param path [out] vertices of the path from source to target, left empty if not reachable; may be null
+	 * @param algorithm algorithm variant
+	 * @return shortest distance, infinity if not reachable
+	 */
+	public double getShortestPath(int source, int target, ArrayList<V> path, Algorithm algorithm){
+		Workspace w;
+		switch(algorithm){
+		case BIDIRECTIONAL_DIJKSTRA:
+			return bidirectionalSearch(source, target, path);
+		case A_STAR:
+			w=aStarSearch(source, target);
+			if(w.stamp[target]!=w.epoch) return Double.POSITIVE_INFINITY;
+			if(path!=null) appendPath(w, source, target, path);
+			return w.dist[target];
+		default:
+			w=search(source, target, null);
+			if(w.stamp[target]!=w.epoch) return Double.POSITIVE_INFINITY;
+			if(path!=null) appendPath(w, source, target, path);
+			return w.dist[target];
+		}
+	}
+
+	/**
+	 * Dijkstra algorithm with lazy insertion and decrease-key, i.e., O(E log V)
+	 * @param source index of source vertex
+	 * @param target index of target vertex to stop at, -1 if none
+	 * @param targets indices of target vertices to stop at once all are settled, null if none
+	 * @return the calling thread's workspace holding the result
+	 */
+	private Workspace search(int source, int target, int[] targets){
+		int[] offsets=csr.getOffsets();
+		int[] heads=csr.getTargets();
+		double[] weights=csr.getWeights();
+
+		Workspace w=workspaces.get();
+		w.nextEpoch();
+		double[] dist=w.dist;
+		int[] prev=w.prev;
+		int[] stamp=w.stamp;
+		int[] mark=w.mark;
+		int epoch=w.epoch;
+		IndexedMinHeap Q=w.heap;
+
+		//Mark the targets, so that the search ends once all of them are settled
+		int remaining=-1;
+		if(targets!=null){
+			remaining=0;
+			for(int t: targets){
+				if(mark[t]!=epoch){
+					mark[t]=epoch;
+					remaining++;
+				}
+			}
+		}
+
+		//Initialization
+		dist[source]=0;
+		prev[source]=-1;
+		stamp[source]=epoch;
+		Q.insert(source, 0);
+
+		//Main Procedure
+		while (!Q.isEmpty()){
+			int u=Q.poll();
+
+			//Terminate if currently-considered vertex is the (last) target
+			if(u==target) break;
+			if(remaining>0&&mark[u]==epoch&&--remaining==0) break;
+
+			for (int e=offsets[u]; e<offsets[u+1]; e++){
+				int v=heads[e];
+				double alt = dist[u] + weights[e];
+				if (stamp[v]!=epoch||alt<dist[v]){
+					dist[v]=alt;
+					prev[v]=u;
+					stamp[v]=epoch;
+					Q.insertOrDecrease(v, alt);
+				}
+			}
+		}
+		Q.clear();
+		return w;
+	}
+
+	/**
+	 * A* search: Dijkstra ordered by distance from the source plus a lower bound of the distance to the target,
+	 * so that vertices leading away from the target are settled late or never. The bound is the straight-line
+	 * distance scaled by CsrGraph.getHeuristicScale, which is consistent, so a settled vertex is final and the search
+	 * stops once the target is settled.
+	 * @param source index of source vertex
+	 * @param target index of target vertex
+	 * @return the calling thread's workspace holding the result
+	 */
+	private Workspace aStarSearch(int source, int target){
+		int[] offsets=csr.getOffsets();
+		int[] heads=csr.getTargets();
+		double[] weights=csr.getWeights();
+		double scale=csr.getHeuristicScale();
+
+		Workspace w=workspaces.get();
+		w.nextEpoch();
+		double[] dist=w.dist;
+		int[] prev=w.prev;
+		int[] stamp=w.stamp;
+		int[] mark=w.mark; //marks vertices whose bound is computed
+		double[] bound=w.bound;
+		int epoch=w.epoch;
+		IndexedMinHeap Q=w.heap;
+
+		//Initialization
+		dist[source]=0;
+		prev[source]=-1;
+		stamp[source]=epoch;
+		Q.insert(source, 0);
+
+		//Main Procedure
+		while (!Q.isEmpty()){
+			int u=Q.poll();
+			if(u==target) break;
+
+			for (int e=offsets[u]; e<offsets[u+1]; e++){
+				int v=heads[e];
+				double alt = dist[u] + weights[e];
+				if (stamp[v]!=epoch||alt<dist[v]){
+					dist[v]=alt;
+					prev[v]=u;
+					stamp[v]=epoch;
+					if(mark[v]!=epoch){
+						mark[v]=epoch;
+						bound[v]=scale*csr.straightLineDistance(v, target);
+					}
+					Q.insertOrDecrease(v, alt+bound[v]);
+				}
+			}
+		}
+		Q.clear();
+		return w;
+	}
+
+	/**
+	 * Bidirectional Dijkstra: a forward search from the source and a backward search (over the transpose) from the
+	 * target advance alternately by the smaller queue head, and stop once the two heads together can no longer
+	 * improve the best meeting path found.
+	 */
+	private double bidirectionalSearch(int source, int target, ArrayList<V> path){
+		if(source==target){
+			if(path!=null) path.add(csr.vertexAt(source));
+			return 0;
+		}
+
+		Workspace f=workspaces.get();
+		Workspace b=backWorkspaces.get();
+		f.nextEpoch();
+		b.nextEpoch();
+		f.dist[source]=0;
+		f.prev[source]=-1;
+		f.stamp[source]=f.epoch;
+		f.heap.insert(source, 0);
+		b.dist[target]=0;
+		b.prev[target]=-1;
+		b.stamp[target]=b.epoch;
+		b.heap.insert(target, 0);
+
+		CsrGraph<V> reverse=csr.getReverse();
+		double best=Double.POSITIVE_INFINITY;
+		int meet=-1;
+		while(!f.heap.isEmpty()&&!b.heap.isEmpty()){
+			double topF=f.heap.keyOf(f.heap.peek());
+			double topB=b.heap.keyOf(b.heap.peek());
+			if(topF+topB>=best) break;
+
+			//Expand the side with the smaller head
+			boolean forward=topF<=topB;
+			Workspace w=forward?f:b;
+			Workspace other=forward?b:f;
+			CsrGraph<V> g=forward?csr:reverse;
+			int[] offsets=g.getOffsets();
+			int[] heads=g.getTargets();
+			double[] weights=g.getWeights();
+
+			int u=w.heap.poll();
+			for(int e=offsets[u]; e<offsets[u+1]; e++){
+				int v=heads[e];
+				double alt=w.dist[u]+weights[e];
+				if(w.stamp[v]!=w.epoch||alt<w.dist[v]){
+					w.dist[v]=alt;
+					w.prev[v]=u;
+					w.stamp[v]=w.epoch;
+					w.heap.insertOrDecrease(v, alt);
+				}
+				//A path through u->v meets the other search
+				if(other.stamp[v]==other.epoch&&alt+other.dist[v]<best){
+					best=alt+other.dist[v];
+					meet=v;
+				}
+			}
+		}
+		f.heap.clear();
+		b.heap.clear();
+
+		if(meet<0) return Double.POSITIVE_INFINITY;
+
+		//RETRIVE path: source..meet from the forward search, then meet..target from the backward search
+		if(path!=null){
+			appendPath(f, source, meet, path);
+			for(int u=b.prev[meet]; u>=0; u=b.prev[u]){
+				path.add(csr.vertexAt(u));
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Append the path from source to target recorded in the predecessors of a workspace
+	 */
+	private void appendPath(Workspace w, int source, int target, ArrayList<V> path){
+		int start=path.size();
+		for(int u=target; u>=0; u=w.prev[u]){
+			path.add(csr.vertexAt(u));
+		}
+		for(int i=start, j=path.size()-1; i<j; i++, j--){
+			V tmp=path.get(i);
+			path.set(i, path.get(j));
+			path.set(j, tmp);
+		}
+	}
+
+	/**
+	 * Per-thread scratch space. An entry of dist/prev is valid only if its stamp equals the current epoch,
+	 * so a new query starts in O(1) instead of clearing O(n) arrays.
+	 */
+	private static class Workspace {
+		final double[] dist;
+		final int[] prev;
+		final int[] stamp;
+		final int[] mark; //targets of a one-to-many query, or vertices with a computed A* bound, are marked with the current epoch
+		final double[] bound; //A* lower bound of the distance to the target
+		final IndexedMinHeap heap;
+		int epoch;
+
+		Workspace(int n){
+			dist=new double[n];
+			prev=new int[n];
+			stamp=new int[n];
+			mark=new int[n];
+			bound=new double[n];
+			heap=new IndexedMinHeap(n);
+			epoch=0;
+		}
+
+		void nextEpoch(){
+			epoch++;
+			if(epoch==Integer.MAX_VALUE){ //wrap around
+				Arrays.fill(stamp, 0);
+				Arrays.fill(mark, 0);
+				epoch=1;
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package mcmo;
+
+/**
+ * SplitMix64 random number generator (Steele et al., as in java.util.SplittableRandom): a 64-bit counter mixed
+ * into its outputs. Not thread-safe, so each worker task has its own; unlike java.util.Random a draw is a few
+ * arithmetic operations, without a CAS.
+ * <p>
+ * Streams are derived from keys rather than drawn in call order: stream(seed, key, index) depends only on its
+ * arguments, so a task keyed by, e.g., its seed set and chunk index draws the same numbers whichever thread runs it
+ * and whatever ran before.
+ */
+public final class SplitMix64 {
+	private static final long GOLDEN=0x9E3779B97F4A7C15L; //odd increment of the counter, 2^64 divided by the golden ratio
+
+	private long state;
+
+	/**
+	 * @param seed random seed
+	 */
+	public SplitMix64(long seed) {
+		this.state=seed;
+	}
+
+	/**
+	 * Generator of an independent stream
+	 * @param seed base seed
+	 * @param key key of the stream, e.g., a seed set fingerprint
+	 * @param index index of the stream under the key, e.g., a chunk index
+	 * @return generator of the stream
+	 */
+	public static SplitMix64 stream(long seed, long key, long index){
+		return new SplitMix64(mix(mix(seed+GOLDEN*key)+GOLDEN*(index+1)));
+	}
+
+	/**
+	 * Fingerprint of a set of ints, e.g., the indices of a seed set
+	 * @param sorted elements, sorted so that equal sets give equal fingerprints
+	 * @return 64-bit hash
+	 */
+	public static long fingerprint(int[] sorted){
+		long h=sorted.length;
+		for(int x: sorted){
+			h=mix(h+GOLDEN+x);
+		}
+		return h;
+	}
+
+	/**
+	 * @return uniform 64-bit value
+	 */
+	public long nextLong(){
+		return mix(state+=GOLDEN);
+	}
+
+	/**
+	 * @return uniform 32-bit value
+	 */
+	public int nextInt(){
+		return (int) (nextLong()>>>32);
+	}
+
+	/**
+	 * Uniform value in [0, bound) by multiplying a 32-bit draw, biased by less than bound/2^32
+	 * @param bound upper bound, positive
+	 * @return value in [0, bound)
+	 */
+	public int nextInt(int bound){
+		if(bound<=0) throw new IllegalArgumentException("bound must be positive");
+		return (int) (((nextLong()>>>32)*bound)>>>32);
+	}
+
+	/**
+	 * Finalizer of SplitMix64 (variant 13 of Stafford's mix), a bijection that spreads every input bit
+	 */
+	static long mix(long z){
+		z=(z^(z>>>30))*0xBF58476D1CE4E5B9L;
+		z=(z^(z>>>27))*0x94D049BB133111EBL;
+		return z^(z>>>31);
+	}
+}
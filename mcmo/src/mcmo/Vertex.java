@@ -7,8 +7,9 @@ public class Vertex <V> implements Comparable <Vertex <V>> {
 	private double visit_cost;
 	private boolean is_visited;
 	private double x_coord, y_coord;
+	private boolean has_coordinates;
 
-	//Dijkstra algorithm related fields
+	//Dijkstra algorithm related fields (Graph keeps shortest path state per thread and never writes them)
 	public double min_dist; //minimum distance from source to current vertex
 	public V pre_node; //ID of predecessor vertex
 
@@ -26,6 +27,23 @@ public class Vertex <V> implements Comparable <Vertex <V>> {
 	public void setCoordinates(double x, double y){
 		x_coord=x;
 		y_coord=y;
+		has_coordinates=true;
+	}
+
+	/**
+	 * Whether coordinates were assigned, e.g., by DataLoader
+	 * @return true if setCoordinates has been called
+	 */
+	public boolean hasCoordinates(){
+		return has_coordinates;
+	}
+
+	public double getX(){
+		return x_coord;
+	}
+
+	public double getY(){
+		return y_coord;
 	}
 
 	/**
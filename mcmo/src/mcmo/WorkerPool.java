@@ -0,0 +1,64 @@
+package mcmo;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The fork/join pool shared by all parallel work, e.g., influence simulation. It is created on first use and lives
+ * until the JVM exits, so callers do not pay for thread creation on every call.
+ * <p>
+ * The number of threads is the number of available processors, or the system property mcmo.threads if set
+ * (e.g., java -Dmcmo.threads=16 ...). The workers are daemon threads, and a shutdown hook lets running work finish.
+ */
+public class WorkerPool {
+	private WorkerPool() {
+	}
+
+	private static class Holder {
+		static final ForkJoinPool POOL=create();
+	}
+
+	private static ForkJoinPool create(){
+		int threads=Runtime.getRuntime().availableProcessors();
+		String property=System.getProperty("mcmo.threads");
+		if(property!=null){
+			try {
+				threads=Math.max(1, Integer.parseInt(property.trim()));
+			} catch (NumberFormatException e) {
+				System.out.println("Invalid mcmo.threads="+property+", using "+threads+" threads");
+			}
+		}
+
+		final ForkJoinPool pool=new ForkJoinPool(threads);
+		Runtime.getRuntime().addShutdownHook(new Thread("mcmo-pool-shutdown"){
+			@Override
+			public void run(){
+				pool.shutdown();
+				try {
+					pool.awaitTermination(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		return pool;
+	}
+
+	/**
+	 * @return the shared pool
+	 */
+	public static ForkJoinPool get(){
+		return Holder.POOL;
+	}
+
+	/**
+	 * Size of chunk i when work is split into the given number of chunks as evenly as possible
+	 * @param work total amount of work
+	 * @param chunks number of chunks
+	 * @param i chunk index
+	 * @return amount of work of the chunk
+	 */
+	public static int chunkSize(int work, int chunks, int i){
+		return work/chunks+((i<work%chunks)?1:0);
+	}
+}